@@ -0,0 +1,69 @@
+package com.pavelkuzmin.sortit.bench;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.pavelkuzmin.sortit.core.ExifDateExtractor;
+import com.pavelkuzmin.sortit.core.MediaDateExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Извлечение даты из файлов-фикстур (см. Fixtures): быстрый путь против полного разбора
+ * metadata-extractor'ом. Файлы лежат в page cache, так что это стоимость разбора, а не диска.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DateExtractorBench {
+
+    private Path dir;
+    private File jpeg;
+    private File mp4;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("sortit-bench-media");
+        jpeg = Fixtures.jpeg(dir).toFile();
+        mp4 = Fixtures.mp4(dir).toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Optional<LocalDate> exifExtractorJpeg() {
+        return ExifDateExtractor.readDate(jpeg);
+    }
+
+    @Benchmark
+    public Optional<LocalDate> exifFullParseJpeg() throws Exception {
+        return ExifDateExtractor.readDate(ImageMetadataReader.readMetadata(jpeg));
+    }
+
+    @Benchmark
+    public Optional<LocalDate> mediaExtractorJpeg() {
+        return MediaDateExtractor.readDate(jpeg);
+    }
+
+    @Benchmark
+    public Optional<LocalDate> mediaExtractorMp4() {
+        return MediaDateExtractor.readDate(mp4);
+    }
+
+    @Benchmark
+    public Optional<LocalDate> mediaFullParseMp4() throws Exception {
+        return MediaDateExtractor.readDate(ImageMetadataReader.readMetadata(mp4), mp4.getName());
+    }
+}
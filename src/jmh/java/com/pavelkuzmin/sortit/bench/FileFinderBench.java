@@ -0,0 +1,55 @@
+package com.pavelkuzmin.sortit.bench;
+
+import com.pavelkuzmin.sortit.core.FileFinder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * FileFinder.scan на синтетической папке из N пустых файлов (смесь IMG_/VID_/DSC).
+ * 1M файлов создаётся долго и занимает место под inode'ы — запускать осознанно:
+ *   ./gradlew jmh -PjmhIncludes=FileFinderBench
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class FileFinderBench {
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private Path dir;
+    private final FileFinder finder = new FileFinder();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("sortit-bench-finder");
+        for (int i = 0; i < entries; i++) {
+            String name = switch (i % 3) {
+                case 0 -> String.format("IMG_2024%02d%02d_%07d.jpg", 1 + i % 12, 1 + i % 28, i);
+                case 1 -> String.format("VID_2024%02d%02d_%07d.mp4", 1 + i % 12, 1 + i % 28, i);
+                default -> String.format("DSC%07d.JPG", i);
+            };
+            Files.createFile(dir.resolve(name));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public FileFinder.Result scan() {
+        return finder.scan(dir.toString(), "*.*");
+    }
+}
@@ -0,0 +1,55 @@
+package com.pavelkuzmin.sortit.bench;
+
+import com.pavelkuzmin.sortit.core.FilenameDateParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** FilenameDateParser.parse/scan на смеси реальных имён: Pixel, Android, Windows Phone, Samsung и без даты. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class FilenameDateParserBench {
+
+    @Param({"mixed", "pxl", "nomatch"})
+    public String mix;
+
+    private String[] names;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        names = new String[4096];
+        for (int i = 0; i < names.length; i++) {
+            int kind = switch (mix) {
+                case "pxl" -> 0;
+                case "nomatch" -> 5;
+                default -> rnd.nextInt(6);
+            };
+            String date = String.format("20%02d%02d%02d", 10 + rnd.nextInt(15), 1 + rnd.nextInt(12), 1 + rnd.nextInt(28));
+            String time = String.format("%02d%02d%02d", rnd.nextInt(24), rnd.nextInt(60), rnd.nextInt(60));
+            names[i] = switch (kind) {
+                case 0 -> "PXL_" + date + "_" + time + rnd.nextInt(1000) + ".jpg";
+                case 1 -> "IMG_" + date + "_" + time + ".jpg";
+                case 2 -> "VID_" + date + "_" + time + ".mp4";
+                case 3 -> "WP_" + date + "_" + String.format("%03d", rnd.nextInt(1000)) + ".jpg";
+                case 4 -> date + "_" + time + ".jpg";
+                default -> "DSC" + String.format("%05d", rnd.nextInt(100000)) + ".JPG";
+            };
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4096)
+    public void parse(Blackhole bh) {
+        for (String n : names) bh.consume(FilenameDateParser.parse(n));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4096)
+    public void scan(Blackhole bh) {
+        for (String n : names) bh.consume(FilenameDateParser.scan(n));
+    }
+}
@@ -0,0 +1,132 @@
+package com.pavelkuzmin.sortit.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Синтетические файлы для бенчмарков (реальные снимки в репозиторий не кладём):
+ *  - JPEG: APP0 + APP1/Exif (IFD0 DateTime, ExifIFD DateTimeOriginal + OffsetTimeOriginal),
+ *    крупный APP2 (как ICC-профиль) и 2 МБ "сжатых данных" после SOS;
+ *  - MP4: ftyp, разреженный mdat на 1 ГБ и moov в конце (mvhd + Apple creationdate).
+ */
+final class Fixtures {
+    private Fixtures() {}
+
+    static Path jpeg(Path dir) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xD8});
+
+        byte[] jfif = {'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0};
+        segment(out, 0xE0, jfif);
+
+        byte[] tiff = tiff();
+        byte[] exif = new byte[6 + tiff.length];
+        System.arraycopy("Exif".getBytes(StandardCharsets.US_ASCII), 0, exif, 0, 4);
+        System.arraycopy(tiff, 0, exif, 6, tiff.length);
+        segment(out, 0xE1, exif);
+
+        segment(out, 0xE2, new byte[60_000]);
+        segment(out, 0xDA, new byte[]{1, 1, 0, 0, 0x3F, 0});
+
+        byte[] scan = new byte[2 * 1024 * 1024];
+        new Random(1).nextBytes(scan);
+        for (int i = 0; i < scan.length; i++) if (scan[i] == (byte) 0xFF) scan[i] = 0; // без маркеров
+        out.write(scan);
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xD9});
+
+        Path p = dir.resolve("PXL_20230506_233000000.jpg");
+        Files.write(p, out.toByteArray());
+        return p;
+    }
+
+    static Path mp4(Path dir) throws IOException {
+        byte[] ftyp = box("ftyp", concat("isom".getBytes(StandardCharsets.US_ASCII), new byte[4],
+                "isommp42".getBytes(StandardCharsets.US_ASCII)));
+
+        long secs = 1_683_415_800L + 2_082_844_800L; // 2023-05-06T23:30:00Z от 1904 г.
+        ByteBuffer mvhdBody = ByteBuffer.allocate(100);
+        mvhdBody.putInt(0).putInt((int) secs).putInt((int) secs).putInt(600);
+        byte[] mvhd = box("mvhd", mvhdBody.array());
+
+        byte[] key = "com.apple.quicktime.creationdate".getBytes(StandardCharsets.US_ASCII);
+        byte[] keys = box("keys", concat(new byte[4], int32(1), int32(8 + key.length),
+                "mdta".getBytes(StandardCharsets.US_ASCII), key));
+        byte[] value = "2023-05-07T08:30:00+0900".getBytes(StandardCharsets.US_ASCII);
+        byte[] ilst = box("ilst", box(int32(1), box("data", concat(int32(1), int32(0), value))));
+        byte[] hdlr = box("hdlr", concat(new byte[8], "mdta".getBytes(StandardCharsets.US_ASCII), new byte[13]));
+        byte[] moov = box("moov", concat(mvhd, box("meta", concat(hdlr, keys, ilst))));
+
+        long mdatSize = 1L << 30;
+        Path p = dir.resolve("VID_20230507_083000.mp4");
+        try (RandomAccessFile f = new RandomAccessFile(p.toFile(), "rw")) {
+            f.write(ftyp);
+            f.write(int32(1));
+            f.write("mdat".getBytes(StandardCharsets.US_ASCII));
+            f.writeLong(mdatSize + 16);
+            f.seek(ftyp.length + 16 + mdatSize); // разреженный файл: на диске место не занимает
+            f.write(moov);
+        }
+        return p;
+    }
+
+    private static byte[] tiff() {
+        ByteBuffer b = ByteBuffer.allocate(256); // big-endian ("MM")
+        b.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+        byte[] dt = "2023:05:06 23:30:00\0".getBytes(StandardCharsets.US_ASCII);
+
+        // IFD0 @8: DateTime, ExifIFD pointer
+        int ifd0Data = 8 + 2 + 2 * 12 + 4;
+        int exifIfd = ifd0Data + dt.length;
+        b.putShort((short) 2);
+        b.putShort((short) 0x0132).putShort((short) 2).putInt(dt.length).putInt(ifd0Data);
+        b.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(exifIfd);
+        b.putInt(0);
+        b.put(dt);
+
+        // ExifIFD: DateTimeOriginal, OffsetTimeOriginal
+        int exifData = exifIfd + 2 + 2 * 12 + 4;
+        byte[] off = "+03:00\0".getBytes(StandardCharsets.US_ASCII);
+        b.putShort((short) 2);
+        b.putShort((short) 0x9003).putShort((short) 2).putInt(dt.length).putInt(exifData);
+        b.putShort((short) 0x9011).putShort((short) 2).putInt(off.length).putInt(exifData + dt.length);
+        b.putInt(0);
+        b.put(dt).put(off);
+
+        byte[] res = new byte[b.position()];
+        b.flip().get(res);
+        return res;
+    }
+
+    private static void segment(ByteArrayOutputStream out, int marker, byte[] payload) {
+        out.write(0xFF);
+        out.write(marker);
+        int len = payload.length + 2;
+        out.write(len >> 8);
+        out.write(len & 0xFF);
+        out.write(payload, 0, payload.length);
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return box(type.getBytes(StandardCharsets.US_ASCII), payload);
+    }
+
+    private static byte[] box(byte[] type, byte[] payload) {
+        return concat(int32(8 + payload.length), type, payload);
+    }
+
+    private static byte[] int32(int v) {
+        return ByteBuffer.allocate(4).putInt(v).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts) out.write(p, 0, p.length);
+        return out.toByteArray();
+    }
+}
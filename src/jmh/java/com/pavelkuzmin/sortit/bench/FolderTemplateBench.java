@@ -0,0 +1,47 @@
+package com.pavelkuzmin.sortit.bench;
+
+import com.pavelkuzmin.sortit.core.FolderTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/** FolderTemplate.apply / compiled folder() / isValid: типичные шаблоны, несколько сотен разных дат (как в реальном прогоне). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class FolderTemplateBench {
+
+    @Param({"YYYYMMDD", "YYYY-MM-DD", "YY.MM", "YYYY/MM/DD"})
+    public String template;
+
+    private LocalDate[] dates;
+    private FolderTemplate compiled;
+
+    @Setup
+    public void setup() {
+        dates = new LocalDate[512];
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        for (int i = 0; i < dates.length; i++) dates[i] = start.plusDays(i % 365);
+        compiled = FolderTemplate.compile(template).under(Path.of("dest"));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(512)
+    public void apply(Blackhole bh) {
+        for (LocalDate d : dates) bh.consume(FolderTemplate.apply(template, d));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(512)
+    public void folder(Blackhole bh) {
+        for (LocalDate d : dates) bh.consume(compiled.folder(d));
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return FolderTemplate.isValid(template);
+    }
+}
@@ -1,5 +1,6 @@
 package com.pavelkuzmin.sortit;
 
+import com.pavelkuzmin.sortit.cli.CliRunner;
 import com.pavelkuzmin.sortit.i18n.Strings;
 import com.pavelkuzmin.sortit.ui.MainFrame;
 
@@ -8,6 +9,11 @@ import java.awt.*;
 
 public class Main {
     public static void main(String[] args) {
+        // Пакетный режим (без окна): sortit --config sortit.json / --source ... --dest ...
+        if (CliRunner.wants(args)) {
+            System.exit(CliRunner.run(args, System.out, System.err));
+        }
+
         // Язык и UI
         // (Locale больше не прокидываем в Strings; язык берётся из конфига внутри MainFrame)
         EventQueue.invokeLater(() -> {
@@ -0,0 +1,317 @@
+package com.pavelkuzmin.sortit.cli;
+
+import com.pavelkuzmin.sortit.config.AppConfig;
+import com.pavelkuzmin.sortit.config.ConfigIO;
+import com.pavelkuzmin.sortit.config.DateSource;
+import com.pavelkuzmin.sortit.core.FolderTemplate;
+import com.pavelkuzmin.sortit.engine.ArchiveIndex;
+import com.pavelkuzmin.sortit.engine.ProgressMeter;
+import com.pavelkuzmin.sortit.engine.RunJournal;
+import com.pavelkuzmin.sortit.engine.SortEngine;
+import com.pavelkuzmin.sortit.engine.SortJob;
+import com.pavelkuzmin.sortit.engine.SortStats;
+import com.pavelkuzmin.sortit.i18n.Strings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Пакетный режим без UI: тот же SortEngine, параметры — из sortit.json и/или флагов.
+ * Коды выхода: 0 — всё перенесено, 1 — были ошибки по файлам, 2 — неверные параметры,
+ * 3 — прогон прерван.
+ */
+public final class CliRunner {
+    private CliRunner() {}
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FILE_ERRORS = 1;
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_ABORTED = 3;
+
+    /** Пакетный режим включается любым аргументом командной строки. */
+    public static boolean wants(String[] args) {
+        return args != null && args.length > 0;
+    }
+
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        AppConfig cfg = new AppConfig();
+        int dateThreads = -1, transferThreads = -1;
+        boolean quiet = false;
+        boolean reindex = false;
+        String planOutput = "", planInput = "";
+        boolean watch = false;
+        String journalFile = "";
+        long settleMillis = -1;
+
+        try {
+            // --config читаем первым: флаги дальше переопределяют значения из файла
+            for (int i = 0; i < args.length; i++) {
+                if ("--config".equals(args[i])) cfg = ConfigIO.load(new File(value(args, ++i)));
+            }
+            if (cfg.includeGlobs == null) cfg.includeGlobs = new ArrayList<>();
+            if (cfg.excludeGlobs == null) cfg.excludeGlobs = new ArrayList<>();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                switch (a) {
+                    case "--config"          -> i++;
+                    case "--source"          -> cfg.sourceDir = value(args, ++i);
+                    case "--pattern"         -> cfg.filenameTemplate = value(args, ++i);
+                    case "--date-source"     -> cfg.dateSource = DateSource.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                    case "--copy"            -> { cfg.copyMode = true; cfg.linkMode = false; }
+                    case "--move"            -> { cfg.copyMode = false; cfg.linkMode = false; }
+                    case "--link"            -> cfg.linkMode = true;
+                    case "--dest"            -> cfg.destDir = value(args, ++i);
+                    case "--dest-template"   -> cfg.destTemplate = value(args, ++i);
+                    case "--precreate-dirs"  -> cfg.precreateDirs = true;
+                    case "--dedupe"          -> cfg.resolveDuplicates = true;
+                    case "--archive-index"   -> cfg.useArchiveIndex = true;
+                    case "--reindex"         -> reindex = true;
+                    case "--resumable"       -> cfg.resumableJobs = true;
+                    case "--plan"            -> planOutput = value(args, ++i);
+                    case "--run-plan"        -> planInput = value(args, ++i);
+                    case "--journal"         -> journalFile = value(args, ++i);
+                    case "--watch"           -> watch = true;
+                    case "--settle"          -> settleMillis = Long.parseLong(value(args, ++i));
+                    case "--recursive"       -> cfg.recursive = true;
+                    case "--max-depth"       -> cfg.maxDepth = Integer.parseInt(value(args, ++i));
+                    case "--include"         -> cfg.includeGlobs.add(value(args, ++i));
+                    case "--exclude"         -> cfg.excludeGlobs.add(value(args, ++i));
+                    case "--no-cache"        -> cfg.useDateCache = false;
+                    case "--threads"         -> dateThreads = Integer.parseInt(value(args, ++i));
+                    case "--transfer-threads"-> transferThreads = Integer.parseInt(value(args, ++i));
+                    case "--lang"            -> cfg.lang = value(args, ++i);
+                    case "--quiet", "-q"     -> quiet = true;
+                    case "--help", "-h"      -> { usage(out); return EXIT_OK; }
+                    default -> throw new IllegalArgumentException("Unknown option: " + a);
+                }
+            }
+            if (!planOutput.isBlank() && !planInput.isBlank()) {
+                throw new IllegalArgumentException("--plan cannot be combined with --run-plan");
+            }
+            if (watch && !(planOutput.isBlank() && planInput.isBlank())) {
+                throw new IllegalArgumentException("--watch cannot be combined with --plan/--run-plan");
+            }
+        } catch (Exception e) {
+            err.println("sortit: " + e.getMessage());
+            usage(err);
+            return EXIT_USAGE;
+        }
+
+        if (cfg.lang != null && !cfg.lang.isBlank()) Strings.setLanguageCode(cfg.lang);
+
+        if (reindex) {
+            if (cfg.destDir == null || cfg.destDir.isBlank()) {
+                err.println("sortit: " + Strings.get("warn.dest.empty"));
+                return EXIT_USAGE;
+            }
+            try {
+                long n = ArchiveIndex.rebuild(Path.of(cfg.destDir));
+                out.printf(Locale.ROOT, "archive index: %d files%n", n);
+            } catch (IOException e) {
+                err.println("sortit: " + e.getMessage());
+                return EXIT_FILE_ERRORS;
+            }
+            if (cfg.sourceDir == null || cfg.sourceDir.isBlank()) return EXIT_OK; // только переиндексация
+            cfg.useArchiveIndex = true;
+        }
+
+        // у плана свои корни и шаблон — они в его заголовке
+        if (planInput.isBlank()) {
+            if (cfg.sourceDir == null || cfg.sourceDir.isBlank() || !Files.isDirectory(Path.of(cfg.sourceDir))) {
+                err.println("sortit: " + Strings.get("scan.source.missing"));
+                return EXIT_USAGE;
+            }
+            if (cfg.destDir == null || cfg.destDir.isBlank()) {
+                err.println("sortit: " + Strings.get("warn.dest.empty"));
+                return EXIT_USAGE;
+            }
+        }
+        SortJob job = SortJob.fromConfig(cfg);
+        if (planInput.isBlank() && !FolderTemplate.isValid(job.destTemplate)) {
+            err.println("sortit: " + Strings.get("error.dest.template.invalid"));
+            return EXIT_USAGE;
+        }
+        job.planOutput = planOutput;
+        job.planInput = planInput;
+        job.journalFile = journalFile;
+        job.watch = watch;
+        if (settleMillis >= 0) job.watchSettleMillis = settleMillis;
+        if (dateThreads > 0) job.dateThreads = dateThreads;
+        if (transferThreads > 0) job.transferThreads = transferThreads;
+
+        CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch reported = new CountDownLatch(1); // итоги напечатаны — JVM можно завершать
+        AtomicReference<Path> journal = new AtomicReference<>();
+        SortEngine engine = new SortEngine(job, (stats, j) -> {
+            journal.set(j);
+            done.countDown();
+        });
+
+        // Ctrl+C: останавливаемся между файлами, недописанные *.sortit-part убираются.
+        // При наблюдении сперва даём дообработать уже принятые файлы.
+        Thread hook = new Thread(() -> {
+            try {
+                if (job.watch) engine.stopWatching();
+                if (!job.watch || !done.await(10, TimeUnit.SECONDS)) {
+                    engine.cancel();
+                    done.await(10, TimeUnit.SECONDS);
+                }
+                reported.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+        }, "sortit-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        engine.start();
+        SortStats st = engine.getStats();
+        ProgressMeter meter = new ProgressMeter(st, 0);
+        try {
+            int lastDone = 0;
+            while (!done.await(1, TimeUnit.SECONDS)) {
+                if (quiet) continue;
+                if (job.watch) {
+                    int now = st.completed.get();
+                    err.print("\r" + watchLine(st, now - lastDone));
+                    lastDone = now;
+                } else {
+                    meter.sample();
+                    err.print("\r" + progressLine(st) + rateLine(meter));
+                }
+            }
+        } catch (InterruptedException e) {
+            engine.cancel();
+        }
+        try { Runtime.getRuntime().removeShutdownHook(hook); } catch (IllegalStateException ignored) {}
+        if (!quiet) err.println("\r" + progressLine(st));
+
+        printFailures(err, st, journal.get());
+        if (planOutput.isBlank() || !planInput.isBlank()) printSummary(out, st, journal.get());
+        else printPlanSummary(out, st, planOutput);
+        out.flush();
+        reported.countDown();
+
+        if (st.cancelled) return EXIT_ABORTED;
+        return st.errors.get() == 0 ? EXIT_OK : EXIT_FILE_ERRORS;
+    }
+
+    /** Ошибки читаются из журнала потоком — в памяти их не держим. */
+    private static void printFailures(PrintStream err, SortStats st, Path journal) {
+        if (st.journalFailure != null) err.println("sortit: journal: " + st.journalFailure);
+        if (journal == null || st.errors.get() + st.sourceKept.get() == 0) return;
+        try {
+            RunJournal.read(journal, e -> {
+                if (e.notable()) err.println(e.render());
+                return true;
+            });
+        } catch (IOException e) {
+            err.println("sortit: " + journal + ": " + e.getMessage());
+        }
+    }
+
+    private static String progressLine(SortStats st) {
+        return String.format(Locale.ROOT, "listed %d, done %d, ok %d, errors %d, %d MB",
+                st.listed.get(), st.completed.get(), st.ok.get(), st.errors.get(), st.bytesCopied.get() >> 20);
+    }
+
+    private static String rateLine(ProgressMeter m) {
+        return String.format(Locale.ROOT, ", %.0f files/s, %.1f MB/s, ETA %s   ",
+                m.filesPerSecond(), m.bytesPerSecond() / (1024 * 1024), ProgressMeter.formatDuration(m.etaSeconds()));
+    }
+
+    /** Наблюдение: скорость за последнюю секунду и глубина очередей вместо процентов. */
+    private static String watchLine(SortStats st, int perSecond) {
+        return String.format(Locale.ROOT, "watching: %d files/s, waiting %d, queued %d/%d, batches %d, done %d (ok %d, errors %d)   ",
+                perSecond, st.pending, st.listQueued(), st.planQueued(), st.batches.get(),
+                st.completed.get(), st.ok.get(), st.errors.get());
+    }
+
+    private static void printSummary(PrintStream out, SortStats st, Path journal) {
+        double sec = Math.max(st.elapsedSeconds(), 1e-9);
+        out.printf(Locale.ROOT, "files:      %d (ok %d, errors %d)%n", st.listed.get(), st.ok.get(), st.errors.get());
+        out.printf(Locale.ROOT, "bytes:      %d%n", st.bytes.get());
+        out.printf(Locale.ROOT, "elapsed:    %.3f s%n", sec);
+        out.printf(Locale.ROOT, "throughput: %.1f files/s, %.2f MB/s%n",
+                st.completed.get() / sec, st.bytes.get() / sec / (1024 * 1024));
+        out.printf(Locale.ROOT, "by outcome: copied %.1f MB, moved %.1f MB, skipped %.1f MB, failed %.1f MB%n",
+                st.copiedBytes.get() / 1048576.0, st.movedBytes.get() / 1048576.0,
+                st.skippedBytes.get() / 1048576.0, st.failedBytes.get() / 1048576.0);
+        out.printf(Locale.ROOT, "date cache: %d hits, %d misses; metadata parses: %d%n",
+                st.cacheHits, st.cacheMisses, st.metadataReads);
+        out.printf(Locale.ROOT, "folders:    %d mkdir calls%n", st.mkdirs);
+        if (journal != null) out.printf(Locale.ROOT, "journal:    %s%n", journal);
+        if (st.resumedJob) {
+            out.printf(Locale.ROOT, "job:        resumed, %d files already done before the restart%n", st.resumedDone.get());
+        }
+        if (st.batches.get() > 0) {
+            out.printf(Locale.ROOT, "watch:      %d batches, %d file system events%n", st.batches.get(), st.watchEvents);
+        }
+        if (st.archived > 0) {
+            out.printf(Locale.ROOT, "archived:   %d already in destination, skipped%n", st.archived);
+        }
+        if (st.duplicates.get() + st.suffixed.get() > 0) {
+            out.printf(Locale.ROOT, "duplicates: %d skipped, %d saved with suffix (%d compared byte by byte)%n",
+                    st.duplicates.get(), st.suffixed.get(), st.fullCompares.get());
+        }
+        if (st.renamed.get() + st.movedAcross.get() > 0) {
+            out.printf(Locale.ROOT, "moves:      %d renamed, %d copied across volumes%n", st.renamed.get(), st.movedAcross.get());
+        }
+        if (st.sourceKept.get() > 0) {
+            out.printf(Locale.ROOT, "kept:       %d copied across volumes, but the source could not be deleted%n", st.sourceKept.get());
+        }
+        if (st.linked.get() + st.linkFallbacks.get() > 0) {
+            out.printf(Locale.ROOT, "links:      %d (copied instead: %d)%n", st.linked.get(), st.linkFallbacks.get());
+        }
+        if (!st.metrics.isEmpty()) {
+            out.println("stages:");
+            for (String line : st.metrics.summary()) out.println("  " + line);
+        }
+    }
+
+    private static void printPlanSummary(PrintStream out, SortStats st, String file) {
+        out.printf(Locale.ROOT, "plan:       %d files into %d folders, %d bytes%n", st.ok.get(), st.planFolders, st.bytes.get());
+        out.printf(Locale.ROOT, "conflicts:  %d (name already taken)%n", st.conflicts.get());
+        out.printf(Locale.ROOT, "will fail:  %d%n", st.errors.get());
+        out.printf(Locale.ROOT, "elapsed:    %.3f s%n", st.elapsedSeconds());
+        out.printf(Locale.ROOT, "written to  %s (per-folder totals at the end)%n", file);
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static void usage(PrintStream s) {
+        s.println("""
+                Usage: sortit [--config sortit.json] [options]
+                  --source DIR            source folder
+                  --pattern GLOB          file name pattern (default *.*)
+                  --date-source SRC       METADATA | FILENAME | CREATED
+                  --copy | --move         transfer mode (default copy)
+                  --link                  hard-link into the date layout (same volume), copy where impossible
+                  --dest DIR              destination folder
+                  --dest-template TPL     folder template, e.g. YYYYMMDD, YYYY-MM or YYYY/MM/DD
+                  --precreate-dirs        create all destination folders before transferring
+                  --dedupe                on a name clash skip identical files, save different ones as "name (N)"
+                  --archive-index         skip files whose content is already anywhere in the destination
+                  --reindex               rebuild the destination index (alone: rebuild and exit)
+                  --resumable             keep a job manifest in the destination; after a crash rerun to continue
+                  --plan FILE             only write where every file would go (nothing is created or moved)
+                  --run-plan FILE         execute a plan written by --plan without re-reading dates
+                  --watch                 keep running and sort new files as they arrive (Ctrl+C to stop)
+                  --settle MS             watch: a file is complete when unchanged this long (default 2000)
+                  --recursive             walk subfolders (--max-depth N, --include GLOB, --exclude GLOB)
+                  --no-cache              do not use sortit-dates.cache
+                  --threads N             date extraction workers
+                  --transfer-threads N    transfer workers
+                  --journal FILE          per-file run journal, JSON Lines (default sortit-<time>.jsonl)
+                  --quiet                 no progress line
+                Exit codes: 0 ok, 1 some files failed, 2 bad arguments, 3 aborted""");
+    }
+}
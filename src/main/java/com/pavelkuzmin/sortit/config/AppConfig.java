@@ -1,5 +1,8 @@
 package com.pavelkuzmin.sortit.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AppConfig {
     // Источник
     public String lang = "en";
@@ -7,14 +10,27 @@ public class AppConfig {
     public String filenameTemplate = "*.*";         // настоящий шаблон (glob)
     public DateSource dateSource = DateSource.METADATA; // по умолчанию EXIF/metadata
     public boolean copyMode = true;                 // true = копировать, false = переносить
+    public boolean linkMode = false;                // жёсткие ссылки вместо копий (важнее copyMode)
+    public boolean recursive = false;               // обходить подпапки
+    public int maxDepth = -1;                       // глубина рекурсии (-1 — без ограничения)
+    public List<String> includeGlobs = new ArrayList<>(); // glob'ы по относительному пути
+    public List<String> excludeGlobs = new ArrayList<>();
 
     // Назначение
     public String destDir = "";
     public String destTemplate = "YYYYMMDD";
+    public boolean precreateDirs = false;           // все папки дат — заранее, одним пакетом
+    public boolean useArchiveIndex = false;         // индекс содержимого архива (.sortit-index в назначении)
+    public boolean resumableJobs = false;           // манифест задачи в назначении: перезапуск продолжает с места сбоя
+    public boolean resolveDuplicates = false;       // совпало имя: дубль пропустить, другой файл — "имя (N)"
 
     // Поведение
     public boolean showResult = false;
 
+    // Кэш найденных дат (sortit-dates.cache рядом с sortit.json)
+    public boolean useDateCache = true;
+    public int dateCacheMaxEntries = 1_000_000;
+
     // Положение окна (если -1 — не задано)
     public int windowX = -1;
     public int windowY = -1;
@@ -26,6 +26,11 @@ public class ConfigIO {
         }
     }
 
+    /** Чтение конфига из произвольного файла (для пакетного режима); ошибки — наружу. */
+    public static AppConfig load(File f) throws java.io.IOException {
+        return MAPPER.readValue(f, AppConfig.class);
+    }
+
     public static void save(AppConfig cfg) {
         try {
             MAPPER.writeValue(new File(FILE_NAME), cfg);
@@ -0,0 +1,7 @@
+package com.pavelkuzmin.sortit.config;
+
+public enum TransferMode {
+    COPY,
+    MOVE,
+    LINK   // жёсткая ссылка в раскладку по датам (тот же том); где нельзя — копия
+}
@@ -0,0 +1,37 @@
+package com.pavelkuzmin.sortit.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Позиционное чтение из FileChannel с общим лимитом байт на файл (для быстрых заголовочных парсеров). */
+final class BoundedReader {
+    private final FileChannel ch;
+    private final LongAdder counter;
+    private int budget;
+
+    BoundedReader(FileChannel ch, int budget, LongAdder counter) {
+        this.ch = ch;
+        this.budget = budget;
+        this.counter = counter;
+    }
+
+    long size() throws IOException {
+        return ch.size();
+    }
+
+    /** Ровно len байт с позиции pos (big-endian по умолчанию); сверх бюджета — IOException. */
+    ByteBuffer read(long pos, int len) throws IOException {
+        if (pos < 0 || len < 0 || len > budget) throw new IOException("Header read budget exceeded");
+        budget -= len;
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + buf.position());
+            if (n < 0) throw new EOFException();
+        }
+        counter.add(len);
+        return buf.flip();
+    }
+}
@@ -1,6 +1,5 @@
 package com.pavelkuzmin.sortit.core;
 
-import com.drew.imaging.ImageMetadataReader;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.exif.ExifIFD0Directory;
@@ -28,8 +27,20 @@ public final class ExifDateExtractor {
 
     public static Optional<LocalDate> readDate(File file) {
         try {
-            Metadata md = ImageMetadataReader.readMetadata(file);
+            // быстрый путь: только заголовок JPEG/TIFF, без полного дерева метаданных
+            if (ExifHeaderReader.supports(file.getName())) {
+                Optional<LocalDate> fast = ExifHeaderReader.readDate(file.toPath());
+                if (fast.isPresent()) return fast;
+            }
+            return readDate(MediaDateExtractor.readMetadata(file));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
 
+    /** То же по уже разобранным метаданным — без повторного чтения файла. */
+    public static Optional<LocalDate> readDate(Metadata md) {
+        try {
             // 1) EXIF SubIFD — основной источник
             ExifSubIFDDirectory sub = md.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
             if (sub != null) {
@@ -80,20 +91,24 @@ public final class ExifDateExtractor {
 
     /** Парсинг EXIF-строки + учёт OffsetTime*/
     private static LocalDate parseExifDate(Directory dir, String exifDateTime) {
+        return parseExifDate(exifDateTime,
+                safeGetString(dir, TAG_OFFSET_TIME_ORIGINAL),
+                safeGetString(dir, TAG_OFFSET_TIME_DIGITIZED),
+                safeGetString(dir, TAG_OFFSET_TIME));
+    }
+
+    /** То же по сырым строкам тегов (используется и быстрым ExifHeaderReader). */
+    static LocalDate parseExifDate(String exifDateTime, String offsetOriginal, String offsetDigitized, String offsetTime) {
         try {
             LocalDateTime ldt = LocalDateTime.parse(exifDateTime, EXIF_DT);
 
             // Попробуем учесть смещение (OffsetTimeOriginal/OffsetTime/OffsetTimeDigitized)
-            String off = firstNonBlank(
-                    safeGetString(dir, TAG_OFFSET_TIME_ORIGINAL),
-                    safeGetString(dir, TAG_OFFSET_TIME_DIGITIZED),
-                    safeGetString(dir, TAG_OFFSET_TIME)
-            );
+            String off = firstNonBlank(offsetOriginal, offsetDigitized, offsetTime);
             if (off != null && !off.isBlank()) {
                 try {
                     ZoneOffset zo = ZoneOffset.of(off.trim());
                     return ldt.atOffset(zo).atZoneSameInstant(ZoneId.systemDefault()).toLocalDate();
-                } catch (DateTimeParseException ignored) {
+                } catch (DateTimeException ignored) {
                     // если смещение странное — вернём без него
                     return ldt.toLocalDate();
                 }
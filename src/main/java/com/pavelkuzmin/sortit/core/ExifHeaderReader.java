@@ -0,0 +1,184 @@
+package com.pavelkuzmin.sortit.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Быстрое чтение даты съёмки из JPEG/TIFF/DNG: идём только по цепочке APP1 → TIFF → IFD0 → ExifIFD
+ * через FileChannel, читая несколько небольших кусков (суммарно не больше READ_BUDGET).
+ * Полный Metadata не строится. Если структура необычная или даты нет — Optional.empty(),
+ * и вызывающий уходит на обычный разбор metadata-extractor'ом.
+ */
+public final class ExifHeaderReader {
+    private ExifHeaderReader() {}
+
+    private static final int READ_BUDGET = 64 * 1024;  // больше не читаем — это уже не "заголовок"
+    private static final int MAX_JPEG_SEGMENTS = 32;
+    private static final int MAX_IFD_ENTRIES = 1024;
+    private static final int MAX_ASCII = 64;
+
+    private static final int TAG_DATETIME           = 0x0132;
+    private static final int TAG_EXIF_IFD_POINTER   = 0x8769;
+    private static final int TAG_DATETIME_ORIGINAL  = 0x9003;
+    private static final int TAG_DATETIME_DIGITIZED = 0x9004;
+    private static final int TAG_OFFSET_TIME            = 0x9010;
+    private static final int TAG_OFFSET_TIME_ORIGINAL   = 0x9011;
+    private static final int TAG_OFFSET_TIME_DIGITIZED  = 0x9012;
+
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_LONG  = 4;
+    private static final int TYPE_IFD   = 13;
+
+    // Сколько байт прочитано быстрым путём (для сравнения с полным разбором)
+    private static final LongAdder BYTES = new LongAdder();
+
+    /** Нужные теги одного IFD. */
+    private static final class Ifd {
+        String dateTime, dateTimeOriginal, dateTimeDigitized;
+        String offsetTime, offsetTimeOriginal, offsetTimeDigitized;
+        long exifIfdOffset = -1;
+    }
+
+    public static boolean supports(String fileName) {
+        String n = fileName.toLowerCase(Locale.ROOT);
+        return n.endsWith(".jpg") || n.endsWith(".jpeg")
+                || n.endsWith(".tif") || n.endsWith(".tiff") || n.endsWith(".dng");
+    }
+
+    public static long bytesRead() {
+        return BYTES.sum();
+    }
+
+    public static Optional<LocalDate> readDate(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            BoundedReader r = new BoundedReader(ch, READ_BUDGET, BYTES);
+            long tiffBase = locateTiff(r);
+            if (tiffBase < 0) return Optional.empty();
+            return Optional.ofNullable(readTiff(r, tiffBase));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Смещение TIFF-заголовка в файле: 0 для TIFF/DNG, внутри APP1 "Exif" для JPEG; -1 — не нашли. */
+    private static long locateTiff(BoundedReader r) throws IOException {
+        ByteBuffer h = r.read(0, 4);
+        int b0 = h.get(0) & 0xFF, b1 = h.get(1) & 0xFF;
+
+        if (b0 == 0xFF && b1 == 0xD8) {
+            long pos = 2;
+            for (int i = 0; i < MAX_JPEG_SEGMENTS; i++) {
+                ByteBuffer m = r.read(pos, 4);
+                if ((m.get(0) & 0xFF) != 0xFF) return -1;
+                int marker = m.get(1) & 0xFF;
+                if (marker == 0xDA || marker == 0xD9) return -1; // начались данные — EXIF уже не будет
+                int len = m.getShort(2) & 0xFFFF;
+                if (len < 2) return -1;
+                if (marker == 0xE1 && len >= 8) {
+                    ByteBuffer id = r.read(pos + 4, 6);
+                    if (id.get(0) == 'E' && id.get(1) == 'x' && id.get(2) == 'i' && id.get(3) == 'f'
+                            && id.get(4) == 0 && id.get(5) == 0) {
+                        return pos + 10;
+                    }
+                }
+                pos += 2 + len;
+            }
+            return -1;
+        }
+
+        boolean ii = b0 == 'I' && b1 == 'I' && h.get(2) == 42 && h.get(3) == 0;
+        boolean mm = b0 == 'M' && b1 == 'M' && h.get(2) == 0 && h.get(3) == 42;
+        return (ii || mm) ? 0 : -1;
+    }
+
+    /** Разбор TIFF-структуры с заданного смещения (годится и для Exif-элемента внутри HEIC). */
+    static LocalDate readTiff(BoundedReader r, long base) throws IOException {
+        ByteBuffer hdr = r.read(base, 8);
+        ByteOrder order;
+        if (hdr.get(0) == 'I' && hdr.get(1) == 'I') order = ByteOrder.LITTLE_ENDIAN;
+        else if (hdr.get(0) == 'M' && hdr.get(1) == 'M') order = ByteOrder.BIG_ENDIAN;
+        else return null;
+        hdr.order(order);
+        if (hdr.getShort(2) != 42) return null;
+
+        Ifd ifd0 = readIfd(r, base, hdr.getInt(4) & 0xFFFFFFFFL, order);
+
+        // 1) ExifIFD: DateTimeOriginal, затем DateTimeDigitized
+        if (ifd0.exifIfdOffset > 0) {
+            Ifd sub = readIfd(r, base, ifd0.exifIfdOffset, order);
+            LocalDate d = parse(sub.dateTimeOriginal, sub);
+            if (d == null) d = parse(sub.dateTimeDigitized, sub);
+            if (d != null) return d;
+        }
+        // 2) IFD0 DateTime
+        return parse(ifd0.dateTime, ifd0);
+    }
+
+    private static LocalDate parse(String dt, Ifd offsets) {
+        if (dt == null || dt.isBlank()) return null;
+        return ExifDateExtractor.parseExifDate(dt,
+                offsets.offsetTimeOriginal, offsets.offsetTimeDigitized, offsets.offsetTime);
+    }
+
+    private static Ifd readIfd(BoundedReader r, long base, long offset, ByteOrder order) throws IOException {
+        ByteBuffer cnt = r.read(base + offset, 2).order(order);
+        int n = cnt.getShort(0) & 0xFFFF;
+        if (n == 0 || n > MAX_IFD_ENTRIES) throw new IOException("Unusual IFD");
+
+        ByteBuffer e = r.read(base + offset + 2, n * 12).order(order);
+        Ifd ifd = new Ifd();
+        for (int i = 0; i < n; i++) {
+            int at = i * 12;
+            int tag = e.getShort(at) & 0xFFFF;
+            int type = e.getShort(at + 2) & 0xFFFF;
+            long count = e.getInt(at + 4) & 0xFFFFFFFFL;
+
+            if (tag == TAG_EXIF_IFD_POINTER && (type == TYPE_LONG || type == TYPE_IFD)) {
+                ifd.exifIfdOffset = e.getInt(at + 8) & 0xFFFFFFFFL;
+                continue;
+            }
+            if (type != TYPE_ASCII || !isDateTag(tag)) continue;
+
+            String v = readAscii(r, base, e, at, count, order);
+            switch (tag) {
+                case TAG_DATETIME -> ifd.dateTime = v;
+                case TAG_DATETIME_ORIGINAL -> ifd.dateTimeOriginal = v;
+                case TAG_DATETIME_DIGITIZED -> ifd.dateTimeDigitized = v;
+                case TAG_OFFSET_TIME -> ifd.offsetTime = v;
+                case TAG_OFFSET_TIME_ORIGINAL -> ifd.offsetTimeOriginal = v;
+                case TAG_OFFSET_TIME_DIGITIZED -> ifd.offsetTimeDigitized = v;
+                default -> { }
+            }
+        }
+        return ifd;
+    }
+
+    private static boolean isDateTag(int tag) {
+        return tag == TAG_DATETIME || tag == TAG_DATETIME_ORIGINAL || tag == TAG_DATETIME_DIGITIZED
+                || tag == TAG_OFFSET_TIME || tag == TAG_OFFSET_TIME_ORIGINAL || tag == TAG_OFFSET_TIME_DIGITIZED;
+    }
+
+    /** ASCII-значение: до 4 байт лежит прямо в записи, иначе — по смещению от начала TIFF. */
+    private static String readAscii(BoundedReader r, long base, ByteBuffer entries, int at, long count, ByteOrder order) throws IOException {
+        int len = (int) Math.min(count, MAX_ASCII);
+        byte[] b = new byte[len];
+        if (count <= 4) {
+            for (int i = 0; i < len; i++) b[i] = entries.get(at + 8 + i);
+        } else {
+            long off = entries.order(order).getInt(at + 8) & 0xFFFFFFFFL;
+            r.read(base + off, len).get(b);
+        }
+        int end = 0;
+        while (end < len && b[end] != 0) end++;
+        return new String(b, 0, end, StandardCharsets.ISO_8859_1).trim();
+    }
+}
@@ -2,9 +2,8 @@ package com.pavelkuzmin.sortit.core;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Сканирует папку-источник:
@@ -33,14 +32,20 @@ public class FileFinder {
         }
     }
 
-    private static final Pattern P_IMG_UNDERSCORE = Pattern.compile("^IMG_([0-9]{8}).*", Pattern.CASE_INSENSITIVE);
-    private static final Pattern P_VID_UNDERSCORE = Pattern.compile("^VID_([0-9]{8}).*", Pattern.CASE_INSENSITIVE);
-    private static final Pattern P_PXL = Pattern.compile("^PXL_([0-9]{8}).*", Pattern.CASE_INSENSITIVE);
-    private static final Pattern P_IMG = Pattern.compile("^IMG([0-9]{8}).*", Pattern.CASE_INSENSITIVE);
-    private static final Pattern P_WP = Pattern.compile("^WP_([0-9]{8}).*", Pattern.CASE_INSENSITIVE);
-    private static final Pattern P_YYYYMMDD = Pattern.compile("^([0-9]{8}).*", Pattern.CASE_INSENSITIVE);
+    // Предопределённые категории в порядке приоритета
+    private static final int C_PXL = 0, C_ANY8 = 1, C_IMG_U = 2, C_VID_U = 3, C_IMG = 4, C_WP = 5, C_NONE = -1;
+    private static final String[] C_TEMPLATE = {"PXL_*.*", "*.*", "*.*", "*.*", "*.*", "*.*"};
 
     public Result scan(String sourceDir, String customTemplateRaw) {
+        return scan(sourceDir, customTemplateRaw, null);
+    }
+
+    /**
+     * То же, но с настройками обхода (рекурсия, глубина, include/exclude).
+     * Один потоковый проход: каждое имя сразу классифицируется по всем префиксам и по glob'у,
+     * храним только счётчики — список имён не строится.
+     */
+    public Result scan(String sourceDir, String customTemplateRaw, SourceWalker.Options walk) {
         if (sourceDir == null || sourceDir.isBlank()) {
             return new Result(0, 0, null, true, false);
         }
@@ -49,65 +54,62 @@ public class FileFinder {
             return new Result(0, 0, null, true, false);
         }
 
-        List<String> names = new ArrayList<>();
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
-            for (Path p : ds) {
-                if (Files.isRegularFile(p)) names.add(p.getFileName().toString());
-            }
-        } catch (IOException e) {
+        // Кастомный шаблон (glob). Если пустой/null — считаем "*.*"
+        String tpl = (customTemplateRaw == null || customTemplateRaw.isBlank()) ? "*.*" : customTemplateRaw.trim();
+        NameGlob glob = NameGlob.compile(tpl);
+
+        AtomicIntegerArray counts = new AtomicIntegerArray(C_TEMPLATE.length);
+        AtomicInteger total = new AtomicInteger();
+        AtomicInteger globMatched = new AtomicInteger();
+        try {
+            new SourceWalker(dir, name -> true, walk).walk(p -> {
+                String name = p.getFileName().toString();
+                total.incrementAndGet();
+                int c = classify(name);
+                if (c != C_NONE) counts.incrementAndGet(c);
+                if (glob.matches(name)) globMatched.incrementAndGet();
+                return true;
+            }, () -> false);
+        } catch (IOException | DirectoryIteratorException e) {
             return new Result(0, 0, null, true, false);
         }
 
-        if (names.isEmpty()) return new Result(0, 0, null, false, true);
-
-        // 1) PREDEFINED
-        int pxl = countMatches(P_PXL, names);
-        if (pxl > 0) return new Result(names.size(), pxl, "PXL_*.*", false, false);
-
-        int any8 = countMatches(P_YYYYMMDD, names);
-        if (any8 > 0) return new Result(names.size(), any8, "*.*", false, false);
-
-        int imgU = countMatches(P_IMG_UNDERSCORE, names);
-        if (imgU > 0) return new Result(names.size(), imgU, "*.*", false, false);
+        if (total.get() == 0) return new Result(0, 0, null, false, true);
 
-        int vidU = countMatches(P_VID_UNDERSCORE, names);
-        if (vidU > 0) return new Result(names.size(), vidU, "*.*", false, false);
-
-        int img = countMatches(P_IMG, names);
-        if (img > 0) return new Result(names.size(), img, "*.*", false, false);
-
-        int wp = countMatches(P_WP, names);
-        if (wp > 0) return new Result(names.size(), wp, "*.*", false, false);
+        // 1) PREDEFINED — первая по приоритету категория с совпадениями
+        for (int c = 0; c < C_TEMPLATE.length; c++) {
+            if (counts.get(c) > 0) return new Result(total.get(), counts.get(c), C_TEMPLATE[c], false, false);
+        }
 
-        // 2) Кастомный шаблон (glob). Если пустой/null — считаем "*.*"
-        String tpl = (customTemplateRaw == null || customTemplateRaw.isBlank()) ? "*.*" : customTemplateRaw.trim();
-        Pattern globRx = globToRegex(tpl);
-        int matched = 0;
-        for (String n : names) if (globRx.matcher(n).matches()) matched++;
+        // 2) Кастомный шаблон
+        return new Result(total.get(), globMatched.get(), tpl, false, false);
+    }
 
-        return new Result(names.size(), matched, tpl, false, false);
+    /**
+     * Категория имени по префиксу (без регулярных выражений):
+     * PXL_YYYYMMDD, YYYYMMDD, IMG_YYYYMMDD, VID_YYYYMMDD, IMGYYYYMMDD, WP_YYYYMMDD.
+     * Категории не пересекаются, поэтому достаточно одной проверки на имя.
+     */
+    static int classify(String n) {
+        if (digits(n, 0, 8)) return C_ANY8;
+        if (prefix(n, "PXL_") && digits(n, 4, 8)) return C_PXL;
+        if (prefix(n, "IMG_") && digits(n, 4, 8)) return C_IMG_U;
+        if (prefix(n, "VID_") && digits(n, 4, 8)) return C_VID_U;
+        if (prefix(n, "IMG") && digits(n, 3, 8)) return C_IMG;
+        if (prefix(n, "WP_") && digits(n, 3, 8)) return C_WP;
+        return C_NONE;
     }
 
-    private static int countMatches(Pattern p, List<String> names) {
-        int c = 0;
-        for (String n : names) if (p.matcher(n).matches()) c++;
-        return c;
+    private static boolean prefix(String n, String p) {
+        return n.regionMatches(true, 0, p, 0, p.length());
     }
 
-    private static Pattern globToRegex(String glob) {
-        // Простой glob: * → .*, ? → ., остальные экранируем
-        StringBuilder sb = new StringBuilder("^");
-        for (char ch : glob.toCharArray()) {
-            switch (ch) {
-                case '*': sb.append(".*"); break;
-                case '?': sb.append('.'); break;
-                case '.': sb.append("\\."); break;
-                default:
-                    if ("+()^$|[]{}".indexOf(ch) >= 0) sb.append('\\');
-                    sb.append(ch);
-            }
+    private static boolean digits(String n, int from, int count) {
+        if (n.length() < from + count) return false;
+        for (int i = from; i < from + count; i++) {
+            char ch = n.charAt(i);
+            if (ch < '0' || ch > '9') return false;
         }
-        sb.append('$');
-        return Pattern.compile(sb.toString(), Pattern.CASE_INSENSITIVE);
+        return true;
     }
 }
@@ -2,50 +2,91 @@ package com.pavelkuzmin.sortit.core;
 
 import java.time.LocalDate;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Дата из имени файла. Один проход по символам, без регулярных выражений,
+ * подстрок и исключений: цифры проверяются арифметически.
+ *  1) PREDEFINED — IMG_/VID_/PXL_/IMG/WP_ + YYYYMMDD или YYYYMMDD в начале имени (Samsung);
+ *  2) иначе — первая корректная дата среди 8-значных групп цифр (слева направо, без перекрытия).
+ * Время за датой (PXL_20250104_131548355.jpg) не разбирается: раскладка идёт только по дате.
+ */
 public class FilenameDateParser {
 
-    // PREDEFINED — сначала проверяем их
-    private static final Pattern[] PREDEFINED = new Pattern[]{
-            Pattern.compile("^IMG_([0-9]{8}).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^VID_([0-9]{8}).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^PXL_([0-9]{8}).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^IMG([0-9]{8}).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^WP_([0-9]{8}).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^([0-9]{8}).*", Pattern.CASE_INSENSITIVE) // Samsung YYYYMMDD
-    };
-
-    // Общий поиск: любая 8-значная последовательность
-    private static final Pattern ANY_8_DIGITS = Pattern.compile("([0-9]{8})");
-
-    public static Optional<LocalDate> parse(String name) {
-        // 1) PREDEFINED
-        for (Pattern p : PREDEFINED) {
-            Matcher m = p.matcher(name);
-            if (m.matches()) {
-                Optional<LocalDate> d = parseYYYYMMDD(m.group(1));
-                if (d.isPresent()) return d;
-            }
+    /** Ничего не нашли. */
+    public static final int NO_DATE = -1;
+
+    /** Возвращает LocalDate по имени файла, если удалось. */
+    public static Optional<LocalDate> parse(CharSequence name) {
+        int ymd = scan(name);
+        if (ymd == NO_DATE) return Optional.empty();
+        return Optional.of(LocalDate.of(ymd / 10000, ymd / 100 % 100, ymd % 100));
+    }
+
+    /** Без аллокаций: дата числом YYYYMMDD или NO_DATE. */
+    public static int scan(CharSequence s) {
+        // 1) PREDEFINED: префиксы не пересекаются, так что достаточно определить начало даты
+        int start;
+        if (prefix(s, "IMG_") || prefix(s, "VID_") || prefix(s, "PXL_")) start = 4;
+        else if (prefix(s, "IMG") || prefix(s, "WP_")) start = 3;
+        else start = 0;
+        if (digits(s, start, 8)) {
+            int r = tryAt(s, start);
+            if (r != NO_DATE) return r;
         }
-        // 2) Общий поиск
-        Matcher m = ANY_8_DIGITS.matcher(name);
-        while (m.find()) {
-            Optional<LocalDate> d = parseYYYYMMDD(m.group(1));
-            if (d.isPresent()) return d;
+
+        // 2) Общий поиск: 8-значные группы подряд идущих цифр, как ([0-9]{8}) с find()
+        int n = s.length();
+        int i = 0;
+        while (i + 8 <= n) {
+            if (!isDigit(s.charAt(i))) { i++; continue; }
+            int k = i;
+            while (k < i + 8 && isDigit(s.charAt(k))) k++;
+            if (k < i + 8) { i = k + 1; continue; } // группа короче 8 — перепрыгиваем
+            int r = tryAt(s, i);
+            if (r != NO_DATE) return r;
+            i += 8;
         }
-        return Optional.empty();
+        return NO_DATE;
+    }
+
+    // 8 цифр с позиции i (уже проверены) → YYYYMMDD, если это корректная дата
+    private static int tryAt(CharSequence s, int i) {
+        int y = num(s, i, 4), m = num(s, i + 4, 2), d = num(s, i + 6, 2);
+        if (m < 1 || m > 12 || d < 1 || d > daysInMonth(y, m)) return NO_DATE;
+        return y * 10000 + m * 100 + d;
+    }
+
+    private static int daysInMonth(int y, int m) {
+        return switch (m) {
+            case 2 -> ((y % 4 == 0 && y % 100 != 0) || y % 400 == 0) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static int num(CharSequence s, int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) v = v * 10 + (s.charAt(i) - '0');
+        return v;
+    }
+
+    private static boolean digits(CharSequence s, int from, int count) {
+        if (s.length() < from + count) return false;
+        for (int i = from; i < from + count; i++) if (!isDigit(s.charAt(i))) return false;
+        return true;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
     }
 
-    private static Optional<LocalDate> parseYYYYMMDD(String s) {
-        try {
-            int y = Integer.parseInt(s.substring(0, 4));
-            int m = Integer.parseInt(s.substring(4, 6));
-            int d = Integer.parseInt(s.substring(6, 8));
-            return Optional.of(LocalDate.of(y, m, d));
-        } catch (Exception ignored) {
-            return Optional.empty();
+    private static boolean prefix(CharSequence s, String p) {
+        if (s.length() < p.length()) return false;
+        for (int i = 0; i < p.length(); i++) {
+            char a = s.charAt(i);
+            if (a >= 'a' && a <= 'z') a -= 'a' - 'A';   // как CASE_INSENSITIVE: только ASCII
+            if (a != p.charAt(i)) return false;
         }
+        return true;
     }
 }
@@ -1,13 +1,35 @@
 package com.pavelkuzmin.sortit.core;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
-/** Валидирует и форматирует шаблон папок: допускаются только YYYY, YY, MM, DD и разделители - _ . */
+/**
+ * Валидирует и форматирует шаблон папок: допускаются только YYYY, YY, MM, DD, разделители - _ .
+ * и '/' для вложенных папок (YYYY/MM/DD).
+ * compile() разбирает шаблон один раз в программу из сегментов; папка для каждой даты
+ * собирается один раз и дальше берётся из кэша (за прогон обычно всего несколько сотен дат).
+ */
 public final class FolderTemplate {
 
-    private FolderTemplate() {}
+    // коды сегментов программы; всё остальное — литерал (сам символ)
+    private static final char OP_YYYY = '\1', OP_YY = '\2', OP_MM = '\3', OP_DD = '\4';
 
-    /** Проверка: только токены YYYY|YY|MM|DD и разделители -_. ; минимум один токен. */
+    private final String template;
+    private final char[] program;
+    private final int width;
+    private final Path base;
+    private final ConcurrentHashMap<LocalDate, Path> folders = new ConcurrentHashMap<>();
+
+    private FolderTemplate(String template, char[] program, int width, Path base) {
+        this.template = template;
+        this.program = program;
+        this.width = width;
+        this.base = base;
+    }
+
+    /** Проверка: только токены YYYY|YY|MM|DD, разделители -_. и '/'; в каждом уровне минимум один токен. */
     public static boolean isValid(String template) {
         if (template == null || template.isBlank()) return false;
         int i = 0;
@@ -29,6 +51,11 @@ public final class FolderTemplate {
                 if (run == 2) { sawToken = true; i += run; } else return false;
             } else if (ch == '-' || ch == '_' || ch == '.') {
                 i++;
+            } else if (ch == '/') {
+                // уровень без токенов дал бы пустое имя, "." или ".."
+                if (!sawToken) return false;
+                sawToken = false;
+                i++;
             } else {
                 return false;
             }
@@ -42,28 +69,80 @@ public final class FolderTemplate {
         return j - i;
     }
 
-    /** Применение шаблона к дате. Предполагается, что шаблон уже валиден. */
-    public static String apply(String template, LocalDate date) {
-        StringBuilder out = new StringBuilder(template.length() + 8);
+    /** Разбор шаблона в программу. Шаблон должен быть валиден (см. isValid). */
+    public static FolderTemplate compile(String template) {
+        if (!isValid(template)) throw new IllegalArgumentException("Invalid folder template: " + template);
+        char[] prog = new char[template.length()];
+        int n = 0, width = 0;
         int i = 0;
         while (i < template.length()) {
             char ch = template.charAt(i);
             if (ch == 'Y') {
                 int run = countRun(template, i, 'Y');
-                if (run == 4) out.append(String.format("%04d", date.getYear()));
-                else /* run==2 */ out.append(String.format("%02d", date.getYear() % 100));
+                prog[n++] = run == 4 ? OP_YYYY : OP_YY;
+                width += run;
                 i += run;
-            } else if (ch == 'M') {
-                out.append(String.format("%02d", date.getMonthValue()));
-                i += 2;
-            } else if (ch == 'D') {
-                out.append(String.format("%02d", date.getDayOfMonth()));
+            } else if (ch == 'M' || ch == 'D') {
+                prog[n++] = ch == 'M' ? OP_MM : OP_DD;
+                width += 2;
                 i += 2;
             } else {
-                out.append(ch); // '-', '_', '.'
+                prog[n++] = ch; // '-', '_', '.', '/'
+                width++;
                 i++;
             }
         }
-        return out.toString();
+        return new FolderTemplate(template, Arrays.copyOf(prog, n), width, null);
+    }
+
+    /** Та же программа, но папки строятся внутри base (и кэшируются уже целиком). */
+    public FolderTemplate under(Path base) {
+        return new FolderTemplate(template, program, width, base);
+    }
+
+    public String template() {
+        return template;
+    }
+
+    /** Папка для даты: из кэша, а при первой встрече даты — формат + Path. */
+    public Path folder(LocalDate date) {
+        Path p = folders.get(date);
+        if (p != null) return p;
+        String rel = format(date);
+        return folders.computeIfAbsent(date, d -> base == null ? Path.of(rel) : base.resolve(rel));
+    }
+
+    /** Текст папки для даты (уровни через '/'). */
+    public String format(LocalDate date) {
+        char[] out = new char[width];
+        int y = date.getYear(), n = 0;
+        for (char op : program) {
+            switch (op) {
+                case OP_YYYY -> {
+                    out[n++] = digit(y / 1000); out[n++] = digit(y / 100);
+                    out[n++] = digit(y / 10); out[n++] = digit(y);
+                }
+                case OP_YY -> { out[n++] = digit(y / 10); out[n++] = digit(y); }
+                case OP_MM -> {
+                    int m = date.getMonthValue();
+                    out[n++] = digit(m / 10); out[n++] = digit(m);
+                }
+                case OP_DD -> {
+                    int d = date.getDayOfMonth();
+                    out[n++] = digit(d / 10); out[n++] = digit(d);
+                }
+                default -> out[n++] = op;
+            }
+        }
+        return new String(out, 0, n);
+    }
+
+    private static char digit(int v) {
+        return (char) ('0' + Math.floorMod(v, 10));
+    }
+
+    /** Применение шаблона к дате. Предполагается, что шаблон уже валиден. */
+    public static String apply(String template, LocalDate date) {
+        return compile(template).format(date);
     }
 }
@@ -0,0 +1,280 @@
+package com.pavelkuzmin.sortit.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Дата создания из контейнеров ISO-BMFF (MP4/MOV/3GP/HEIC) без чтения всего файла.
+ * Идём по заголовкам боксов верхнего уровня и перепрыгиваем mdat через seek; читаем только:
+ *   - moov/meta (keys + ilst): com.apple.quicktime.creationdate — локальная дата съёмки (с её же смещением);
+ *   - moov/mvhd: creation_time, секунды с 1904-01-01 UTC — берём дату в UTC, как и раньше;
+ *   - meta (HEIC): Exif-элемент через iinf/iloc → обычный разбор TIFF.
+ * Несколько небольших чтений на файл, даже если moov лежит в конце 4-гигабайтного ролика.
+ */
+public final class IsoBmffDateReader {
+    private IsoBmffDateReader() {}
+
+    private static final int READ_BUDGET = 256 * 1024;
+    private static final int MAX_BOXES = 512;
+    private static final int MAX_BOX_PAYLOAD = 64 * 1024;   // keys/ilst/iinf/iloc читаем целиком, но не больше
+    private static final long SECONDS_1904_TO_1970 = 2_082_844_800L;
+
+    private static final String APPLE_CREATION_DATE = "com.apple.quicktime.creationdate";
+
+    private static final LongAdder BYTES = new LongAdder();
+
+    /** Заголовок бокса: тип и границы полезной нагрузки в файле. */
+    private record Box(int type, long payload, long end) {
+        boolean is(String fourcc) { return type == fourcc(fourcc); }
+        long size() { return end - payload; }
+    }
+
+    public static boolean supports(String fileName) {
+        String n = fileName.toLowerCase(Locale.ROOT);
+        return n.endsWith(".mp4") || n.endsWith(".m4v") || n.endsWith(".mov") || n.endsWith(".3gp")
+                || n.endsWith(".heic") || n.endsWith(".heif");
+    }
+
+    public static long bytesRead() {
+        return BYTES.sum();
+    }
+
+    public static Optional<LocalDate> readDate(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            BoundedReader r = new BoundedReader(ch, READ_BUDGET, BYTES);
+            long fileEnd = r.size();
+
+            LocalDate apple = null, created = null, exif = null;
+            int boxes = 0;
+            for (long pos = 0; ; ) {
+                Box b = box(r, pos, fileEnd);
+                if (b == null || ++boxes > MAX_BOXES) break;
+                if (b.is("moov")) {
+                    LocalDate[] res = readMoov(r, b);
+                    apple = res[0];
+                    created = res[1];
+                    if (apple != null) break;   // точнее уже не будет
+                } else if (b.is("meta")) {
+                    exif = readHeicExif(r, b);
+                    if (exif != null) break;
+                }
+                pos = b.end();                  // mdat и прочее — просто перепрыгиваем
+            }
+
+            if (apple != null) return Optional.of(apple);
+            if (exif != null) return Optional.of(exif);
+            return Optional.ofNullable(created);
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    // ===== moov =====
+
+    /** [0] — Apple creationdate, [1] — mvhd creation_time. */
+    private static LocalDate[] readMoov(BoundedReader r, Box moov) throws IOException {
+        LocalDate[] res = new LocalDate[2];
+        for (long pos = moov.payload(); ; ) {
+            Box b = box(r, pos, moov.end());
+            if (b == null) break;
+            if (b.is("mvhd")) {
+                res[1] = readMvhd(r, b);
+            } else if (b.is("meta") && res[0] == null) {
+                res[0] = readAppleMeta(r, b);
+            } else if (b.is("udta") && res[0] == null) {
+                for (long p = b.payload(); ; ) {
+                    Box u = box(r, p, b.end());
+                    if (u == null) break;
+                    if (u.is("meta")) res[0] = readAppleMeta(r, u);
+                    p = u.end();
+                }
+            }
+            pos = b.end();
+        }
+        return res;
+    }
+
+    private static LocalDate readMvhd(BoundedReader r, Box mvhd) throws IOException {
+        ByteBuffer h = r.read(mvhd.payload(), 12);
+        int version = h.get(0) & 0xFF;
+        long secs = version == 1 ? h.getLong(4) : (h.getInt(4) & 0xFFFFFFFFL);
+        if (secs == 0) return null; // не заполнено
+        return Instant.ofEpochSecond(secs - SECONDS_1904_TO_1970).atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+
+    /** QuickTime meta: keys (список ключей) + ilst (значения по 1-based индексу ключа). */
+    private static LocalDate readAppleMeta(BoundedReader r, Box meta) throws IOException {
+        long start = meta.payload();
+        // в QuickTime meta — обычный бокс, в ISO — FullBox с 4 байтами version/flags
+        if (meta.size() >= 8 && r.read(start + 4, 4).getInt(0) != fourcc("hdlr")) start += 4;
+
+        int wanted = -1;
+        Box ilst = null;
+        for (long pos = start; ; ) {
+            Box b = box(r, pos, meta.end());
+            if (b == null) break;
+            if (b.is("keys")) wanted = findKey(payload(r, b), APPLE_CREATION_DATE);
+            else if (b.is("ilst")) ilst = b;
+            pos = b.end();
+        }
+        if (wanted < 0 || ilst == null) return null;
+
+        for (long pos = ilst.payload(); ; ) {
+            Box item = box(r, pos, ilst.end());
+            if (item == null) break;
+            if (item.type() == wanted) {
+                Box data = box(r, item.payload(), item.end());
+                if (data == null || !data.is("data") || data.size() <= 8) return null;
+                ByteBuffer v = payload(r, data);
+                String s = new String(v.array(), 8, v.limit() - 8, StandardCharsets.UTF_8).trim();
+                return parseAppleDate(s);
+            }
+            pos = item.end();
+        }
+        return null;
+    }
+
+    private static int findKey(ByteBuffer keys, String name) {
+        keys.position(4); // version/flags
+        long count = keys.getInt() & 0xFFFFFFFFL;
+        for (int i = 1; i <= count && keys.remaining() >= 8; i++) {
+            int size = keys.getInt();
+            if (size < 8 || size - 8 > keys.remaining() - 4) return -1;
+            keys.getInt(); // namespace ("mdta")
+            byte[] k = new byte[size - 8];
+            keys.get(k);
+            if (name.equals(new String(k, StandardCharsets.UTF_8))) return i;
+        }
+        return -1;
+    }
+
+    /** "2025-01-04T13:15:48+0300" → 2025-01-04: дата по часам места съёмки. */
+    private static LocalDate parseAppleDate(String s) {
+        if (s.length() < 10) return null;
+        try {
+            return LocalDate.parse(s.substring(0, 10));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // ===== HEIC: meta → iinf/iloc → Exif =====
+
+    private static LocalDate readHeicExif(BoundedReader r, Box meta) throws IOException {
+        long exifId = -1;
+        Box iloc = null;
+        for (long pos = meta.payload() + 4; ; ) { // FullBox
+            Box b = box(r, pos, meta.end());
+            if (b == null) break;
+            if (b.is("iinf")) exifId = findExifItem(payload(r, b));
+            else if (b.is("iloc")) iloc = b;
+            pos = b.end();
+        }
+        if (exifId < 0 || iloc == null) return null;
+
+        long offset = findItemOffset(payload(r, iloc), exifId);
+        if (offset < 0) return null;
+
+        // Exif-элемент: 4 байта смещения до TIFF-заголовка, иногда ещё "Exif\0\0"
+        long tiff = offset + 4 + (r.read(offset, 4).getInt(0) & 0xFFFFFFFFL);
+        ByteBuffer peek = r.read(tiff, 4);
+        if (peek.get(0) == 'E' && peek.get(1) == 'x' && peek.get(2) == 'i' && peek.get(3) == 'f') tiff += 6;
+        return ExifHeaderReader.readTiff(r, tiff);
+    }
+
+    private static long findExifItem(ByteBuffer iinf) {
+        int version = iinf.get(0) & 0xFF;
+        iinf.position(4);
+        long count = version == 0 ? (iinf.getShort() & 0xFFFF) : (iinf.getInt() & 0xFFFFFFFFL);
+        for (long i = 0; i < count && iinf.remaining() >= 8; i++) {
+            int start = iinf.position();
+            long size = iinf.getInt() & 0xFFFFFFFFL;
+            int type = iinf.getInt();
+            if (size < 8 || start + size > iinf.limit()) return -1;
+            if (type == fourcc("infe")) {
+                int v = iinf.get() & 0xFF;
+                iinf.position(iinf.position() + 3);
+                if (v >= 2) {
+                    long id = v == 2 ? (iinf.getShort() & 0xFFFF) : (iinf.getInt() & 0xFFFFFFFFL);
+                    iinf.getShort(); // item_protection_index
+                    if (iinf.getInt() == fourcc("Exif")) return id;
+                }
+            }
+            iinf.position((int) (start + size));
+        }
+        return -1;
+    }
+
+    /** Абсолютное смещение первого экстента элемента; -1 — нет или хранится не в файле. */
+    private static long findItemOffset(ByteBuffer iloc, long itemId) {
+        int version = iloc.get(0) & 0xFF;
+        iloc.position(4);
+        int s1 = iloc.get() & 0xFF, s2 = iloc.get() & 0xFF;
+        int offSize = s1 >> 4, lenSize = s1 & 0x0F, baseSize = s2 >> 4;
+        int idxSize = (version == 1 || version == 2) ? s2 & 0x0F : 0;
+        long count = version < 2 ? (iloc.getShort() & 0xFFFF) : (iloc.getInt() & 0xFFFFFFFFL);
+
+        for (long i = 0; i < count; i++) {
+            long id = version < 2 ? (iloc.getShort() & 0xFFFF) : (iloc.getInt() & 0xFFFFFFFFL);
+            int method = (version == 1 || version == 2) ? iloc.getShort() & 0x0F : 0;
+            iloc.getShort(); // data_reference_index
+            long base = readSized(iloc, baseSize);
+            int extents = iloc.getShort() & 0xFFFF;
+            long first = -1;
+            for (int e = 0; e < extents; e++) {
+                readSized(iloc, idxSize);
+                long off = readSized(iloc, offSize);
+                readSized(iloc, lenSize);
+                if (e == 0) first = off;
+            }
+            if (id == itemId) return (method == 0 && first >= 0) ? base + first : -1;
+        }
+        return -1;
+    }
+
+    private static long readSized(ByteBuffer b, int size) {
+        return switch (size) {
+            case 0 -> 0;
+            case 4 -> b.getInt() & 0xFFFFFFFFL;
+            case 8 -> b.getLong();
+            default -> throw new IllegalArgumentException("Unsupported iloc field size " + size);
+        };
+    }
+
+    // ===== боксы =====
+
+    private static Box box(BoundedReader r, long pos, long limit) throws IOException {
+        if (pos + 8 > limit) return null;
+        ByteBuffer h = r.read(pos, 8);
+        long size = h.getInt(0) & 0xFFFFFFFFL;
+        int type = h.getInt(4);
+        long header = 8;
+        if (size == 1) {
+            size = r.read(pos + 8, 8).getLong(0);
+            header = 16;
+        } else if (size == 0) {
+            size = limit - pos; // до конца родителя
+        }
+        if (size < header || pos + size > limit) throw new IOException("Broken box");
+        return new Box(type, pos + header, pos + size);
+    }
+
+    private static ByteBuffer payload(BoundedReader r, Box b) throws IOException {
+        if (b.size() > MAX_BOX_PAYLOAD) throw new IOException("Box too large");
+        return r.read(b.payload(), (int) b.size());
+    }
+
+    private static int fourcc(String s) {
+        return (s.charAt(0) << 24) | (s.charAt(1) << 16) | (s.charAt(2) << 8) | s.charAt(3);
+    }
+}
@@ -1,6 +1,7 @@
 package com.pavelkuzmin.sortit.core;
 
 import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.Tag;
@@ -8,25 +9,48 @@ import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.xmp.XmpDirectory;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.*;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 /** Универсальный извлекатель даты для фото/видео без жёсткой зависимости от классов директорий. */
 public final class MediaDateExtractor {
     private MediaDateExtractor(){}
 
+    // Сколько раз файлы реально разбирались metadata-extractor'ом (для контроля "один файл — одно чтение")
+    private static final LongAdder READS = new LongAdder();
+
     /** Возвращает дату съёмки/создания из метаданных (LocalDate), если удалось. */
     public static Optional<LocalDate> readDate(File file) {
-        String name = file.getName().toLowerCase(Locale.ROOT);
-
         try {
-            Metadata md = ImageMetadataReader.readMetadata(file);
+            // JPEG/TIFF/DNG: сначала дешёвое чтение только EXIF-заголовка
+            if (ExifHeaderReader.supports(file.getName())) {
+                Optional<LocalDate> fast = ExifHeaderReader.readDate(file.toPath());
+                if (fast.isPresent()) return fast;
+            }
+            // MP4/MOV/HEIC: только нужные боксы, mdat перепрыгиваем
+            if (IsoBmffDateReader.supports(file.getName())) {
+                Optional<LocalDate> fast = IsoBmffDateReader.readDate(file.toPath());
+                if (fast.isPresent()) return fast;
+            }
+            return readDate(readMetadata(file), file.getName());
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Все стратегии (SubIFD, IFD0, XMP, общий проход по тегам) по одному объекту Metadata. */
+    public static Optional<LocalDate> readDate(Metadata md, String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        boolean photo = isPhoto(name);
 
+        try {
             // ---- Фото → используем наш устойчивый EXIF-парсер
-            if (isPhoto(name)) {
-                var d = ExifDateExtractor.readDate(file);
+            if (photo) {
+                var d = ExifDateExtractor.readDate(md);
                 if (d.isPresent()) return d;
 
                 // запасной вариант: IFD0 DateTime
@@ -46,11 +70,13 @@ public final class MediaDateExtractor {
                         "photoshop:DateCreated",
                         "com.apple.quicktime.creationdate"
                 };
+                // вдруг есть EXIF-дубли; для фото EXIF уже проверен выше
+                Optional<LocalDate> exif = null;
                 for (String k : keys) {
                     String v = xmp.getXmpProperties().get(k);
                     if (v != null && !v.isBlank()) {
-                        var parsed = ExifDateExtractor.readDate(file) // вдруг есть EXIF-дубли
-                                .or(() -> parseIsoLike(v));
+                        if (exif == null) exif = photo ? Optional.empty() : ExifDateExtractor.readDate(md);
+                        var parsed = exif.or(() -> parseIsoLike(v));
                         if (parsed.isPresent()) return parsed;
                     }
                 }
@@ -82,6 +108,17 @@ public final class MediaDateExtractor {
         }
     }
 
+    /** Единственная точка полного разбора файла; каждый вызов учитывается в счётчике. */
+    static Metadata readMetadata(File file) throws ImageProcessingException, IOException {
+        READS.increment();
+        return ImageMetadataReader.readMetadata(file);
+    }
+
+    /** Сколько полных разборов метаданных выполнено с момента запуска. */
+    public static long metadataReads() {
+        return READS.sum();
+    }
+
     private static boolean isPhoto(String name) {
         return name.endsWith(".jpg") || name.endsWith(".jpeg") ||
                 name.endsWith(".png") || name.endsWith(".heic") || name.endsWith(".heif");
@@ -0,0 +1,52 @@
+package com.pavelkuzmin.sortit.core;
+
+/**
+ * Шаблон имени файла: '*' — любая последовательность, '?' — один символ, остальное буквально,
+ * без учёта регистра. Сравнение за один проход без регулярных выражений и откатов
+ * (классический жадный алгоритм с запоминанием последней '*').
+ */
+public final class NameGlob {
+
+    private final char[] p;
+    private final boolean matchAll;
+
+    private NameGlob(String glob) {
+        this.p = glob.toCharArray();
+        this.matchAll = glob.equals("*");
+    }
+
+    /** Пустой шаблон считаем "*.*". */
+    public static NameGlob compile(String glob) {
+        String g = (glob == null || glob.isBlank()) ? "*.*" : glob.trim();
+        return new NameGlob(g);
+    }
+
+    public boolean matches(CharSequence name) {
+        if (matchAll) return true;
+        int n = name.length();
+        int i = 0, j = 0;           // позиции в имени и в шаблоне
+        int star = -1, mark = 0;    // последняя '*' в шаблоне и где в имени она начала сопоставление
+        while (i < n) {
+            if (j < p.length && (p[j] == '?' || (p[j] != '*' && same(p[j], name.charAt(i))))) {
+                i++;
+                j++;
+            } else if (j < p.length && p[j] == '*') {
+                star = j++;
+                mark = i;
+            } else if (star >= 0) {
+                j = star + 1;
+                i = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (j < p.length && p[j] == '*') j++;
+        return j == p.length;
+    }
+
+    private static boolean same(char a, char b) {
+        if (a == b) return true;
+        char ua = Character.toUpperCase(a), ub = Character.toUpperCase(b);
+        return ua == ub || Character.toLowerCase(ua) == Character.toLowerCase(ub);
+    }
+}
@@ -0,0 +1,173 @@
+package com.pavelkuzmin.sortit.core;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Обход папки-источника с потоковой выдачей файлов (без построения полного списка).
+ * Без рекурсии — только верхний уровень, как раньше. С рекурсией — подпапки обходятся
+ * параллельно (fork/join, одна задача на папку) с ограничением глубины.
+ * include/exclude — glob'ы по пути относительно корня (напр. "DCIM/**" или "*.tmp");
+ * exclude отсекает и целые подпапки. Ссылки на папки не раскрываются (защита от циклов).
+ * Папка назначения внутри источника (skipDir) не обходится вовсе: там уже разложенные
+ * файлы и служебные .sortit-*.
+ */
+public class SourceWalker {
+
+    /** Папка прочитана: сколько файлов отдано и сколько заняло чтение (без ожидания sink), нс. */
+    public interface DirListener {
+        void listed(Path dir, int files, long nanos);
+    }
+
+    public static class Options {
+        public boolean recursive = false;
+        public int maxDepth = -1;                      // -1 — без ограничения; 0 — только корень
+        public List<String> includeGlobs = List.of();
+        public List<String> excludeGlobs = List.of();
+        public int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+        public DirListener dirListener = null;         // замеры по папкам (метрики), null — без них
+        public Path skipDir = null;                    // не заходить (назначение внутри источника)
+    }
+
+    private final Path root;
+    private final Predicate<String> nameFilter;
+    private final Options opts;
+    private final List<PathMatcher> include = new ArrayList<>();
+    private final List<PathMatcher> exclude = new ArrayList<>();
+    private final Path skip;      // в том же виде, что и пути обхода (от root); null — нечего пропускать
+
+    public SourceWalker(Path root, Predicate<String> nameFilter, Options opts) {
+        this.root = root;
+        this.nameFilter = nameFilter;
+        this.opts = opts == null ? new Options() : opts;
+        FileSystem fs = root.getFileSystem();
+        for (String g : this.opts.includeGlobs) if (g != null && !g.isBlank()) include.add(fs.getPathMatcher("glob:" + g.trim()));
+        for (String g : this.opts.excludeGlobs) if (g != null && !g.isBlank()) exclude.add(fs.getPathMatcher("glob:" + g.trim()));
+        Path top = root.toAbsolutePath().normalize();
+        Path d = this.opts.skipDir == null ? null : this.opts.skipDir.toAbsolutePath().normalize();
+        this.skip = d != null && d.startsWith(top) && !d.equals(top) ? root.resolve(top.relativize(d)) : null;
+    }
+
+    /**
+     * Отдаёт подходящие файлы в sink (может вызываться из нескольких потоков и блокироваться).
+     * Обход прекращается, если sink вернул false или cancelled() == true.
+     * Ошибка чтения корня пробрасывается, ошибки подпапок пропускаются.
+     */
+    public void walk(Predicate<Path> sink, BooleanSupplier cancelled) throws IOException {
+        AtomicBoolean stop = new AtomicBoolean();
+        BooleanSupplier stopped = () -> stop.get() || cancelled.getAsBoolean();
+
+        List<Path> subdirs = listDir(root, sink, stop, stopped, opts.recursive && opts.maxDepth != 0);
+        if (subdirs.isEmpty() || stopped.getAsBoolean()) return;
+
+        ForkJoinPool pool = new ForkJoinPool(opts.parallelism);
+        try {
+            List<DirTask> tasks = new ArrayList<>();
+            for (Path d : subdirs) tasks.add(new DirTask(d, 1, sink, stop, stopped));
+            pool.invoke(new RecursiveAction() {
+                @Override protected void compute() { invokeAll(tasks); }
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Одна папка = одна задача; её подпапки форкаются дальше. */
+    private final class DirTask extends RecursiveAction {
+        private final Path dir;
+        private final int depth;
+        private final Predicate<Path> sink;
+        private final AtomicBoolean stop;
+        private final BooleanSupplier stopped;
+
+        DirTask(Path dir, int depth, Predicate<Path> sink, AtomicBoolean stop, BooleanSupplier stopped) {
+            this.dir = dir;
+            this.depth = depth;
+            this.sink = sink;
+            this.stop = stop;
+            this.stopped = stopped;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped.getAsBoolean()) return;
+            List<Path> subdirs;
+            try {
+                boolean deeper = opts.maxDepth < 0 || depth < opts.maxDepth;
+                subdirs = listDir(dir, sink, stop, stopped, deeper);
+            } catch (IOException | DirectoryIteratorException e) {
+                return; // недоступная подпапка — пропускаем
+            }
+            if (subdirs.isEmpty()) return;
+            List<DirTask> tasks = new ArrayList<>(subdirs.size());
+            for (Path d : subdirs) tasks.add(new DirTask(d, depth + 1, sink, stop, stopped));
+            invokeAll(tasks);
+        }
+    }
+
+    /** Файлы папки — сразу в sink; подпапки (если нужны) — возвращаем списком. */
+    private List<Path> listDir(Path dir, Predicate<Path> sink, AtomicBoolean stop,
+                               BooleanSupplier stopped, boolean collectSubdirs) throws IOException {
+        List<Path> subdirs = new ArrayList<>();
+        DirListener listener = opts.dirListener;
+        long t0 = listener == null ? 0 : System.nanoTime();
+        long inSink = 0;   // ожидание очереди — не чтение папки
+        int files = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (stopped.getAsBoolean()) break;
+                if (collectSubdirs && Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!excluded(p) && !p.equals(skip)) subdirs.add(p);
+                    continue;
+                }
+                if (!Files.isRegularFile(p)) continue;
+                if (!nameFilter.test(p.getFileName().toString())) continue;
+                if (excluded(p) || !included(p)) continue;
+                files++;
+                long s = listener == null ? 0 : System.nanoTime();
+                boolean more = sink.test(p);
+                if (listener != null) inSink += System.nanoTime() - s;
+                if (!more) { stop.set(true); break; }
+            }
+        }
+        if (listener != null) listener.listed(dir, files, System.nanoTime() - t0 - inSink);
+        return subdirs;
+    }
+
+    /** Попал бы файл в обход (шаблон имени, include/exclude) — для наблюдения за папкой. */
+    public boolean accepts(Path file) {
+        return file.startsWith(root) && !skipped(file) && nameFilter.test(file.getFileName().toString()) && !excluded(file) && included(file);
+    }
+
+    /** Зашёл бы обход в эту подпапку (рекурсия, глубина, exclude). */
+    public boolean descends(Path dir) {
+        if (!opts.recursive || !dir.startsWith(root) || dir.equals(root)) return false;
+        int depth = root.relativize(dir).getNameCount();
+        return (opts.maxDepth < 0 || depth <= opts.maxDepth) && !excluded(dir) && !skipped(dir);
+    }
+
+    private boolean skipped(Path p) {
+        return skip != null && p.startsWith(skip);
+    }
+
+    private boolean excluded(Path p) {
+        if (exclude.isEmpty()) return false;
+        Path rel = root.relativize(p);
+        for (PathMatcher m : exclude) if (m.matches(rel)) return true;
+        return false;
+    }
+
+    private boolean included(Path p) {
+        if (include.isEmpty()) return true;
+        Path rel = root.relativize(p);
+        for (PathMatcher m : include) if (m.matches(rel)) return true;
+        return false;
+    }
+}
@@ -0,0 +1,330 @@
+package com.pavelkuzmin.sortit.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Индекс содержимого архива (папки назначения): (размер, хэш начала/конца) → путь.
+ * Нужен, чтобы узнать уже разложенный файл, даже если он лежит в другой папке дат.
+ *
+ * Лежит в корне назначения двумя файлами:
+ *  - .sortit-index — хэш-таблица с открытой адресацией, отображённая в память (mmap):
+ *    слот = size, partial, full (0 — ещё не считали), смещение пути; поиск — O(1) в среднем;
+ *  - .sortit-index.paths — относительные пути (UTF-8 с длиной), только дозапись.
+ * Полный хэш архивного файла считается лениво — когда впервые совпали размер и partial.
+ * Индекс — подсказка: после сбоя он может что-то «забыть», но не выдаст лишнего —
+ * найденный файл перед пропуском проверяется (существует, тот же размер, тот же полный хэш,
+ * и побайтно — совпадение 64-битного хэша ещё не равенство).
+ * Пока индекс открыт, .sortit-index заблокирован (FileLock): второй экземпляр на тот же
+ * архив получает IOException и работает без индекса.
+ */
+public class ArchiveIndex implements Closeable {
+
+    public static final String FILE_NAME = ".sortit-index";
+    static final String PATHS_SUFFIX = ".paths";
+
+    private static final int MAGIC = 0x53495831; // "SIX1"
+    private static final int HEADER = 32;        // magic, версия, capacity, count
+    private static final int SLOT = 32;
+    private static final int MIN_CAPACITY = 1 << 12;
+    private static final int MAX_CAPACITY = 1 << 25;  // 1 ГБ таблицы, ~16 млн файлов при заполнении 1/2
+
+    /** Результат проверки файла-источника; по нему же файл потом добавляется в индекс. */
+    record Probe(long size, long partial, Path existing) {}
+
+    private final Path root;
+    private final FileChannel table;
+    private final FileChannel paths;
+    private final FileLock owner;     // межпроцессная блокировка на всё время работы с индексом
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private MappedByteBuffer map;
+    private int capacity;
+    private int count;
+    private volatile long pathsEnd;
+    private long built = -1;          // сколько файлов проиндексировано при открытии (-1 — индекс уже был)
+
+    public final AtomicLong lookups = new AtomicLong();
+    public final AtomicLong hits = new AtomicLong();
+
+    private ArchiveIndex(Path root, FileChannel table, FileChannel paths, FileLock owner) {
+        this.root = root;
+        this.table = table;
+        this.paths = paths;
+        this.owner = owner;
+    }
+
+    /**
+     * Открыть (или создать) индекс в корне архива. Индекса нет (галку включили на уже
+     * существующем архиве) или он повреждён — сперва индексируется всё, что в архиве уже
+     * лежит, иначе в нём нашлось бы только перенесённое этой программой.
+     * Индекс уже открыт другим процессом (или прогоном) — IOException.
+     */
+    public static ArchiveIndex open(Path root) throws IOException {
+        return open(root, false);
+    }
+
+    private static ArchiveIndex open(Path root, boolean reset) throws IOException {
+        Files.createDirectories(root);
+        FileChannel t = FileChannel.open(root.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock owner;
+        try {
+            owner = t.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            owner = null;
+        }
+        if (owner == null) {
+            t.close();
+            throw new IOException(root.resolve(FILE_NAME) + " is in use by another SortIt instance");
+        }
+        FileChannel p;
+        try {
+            p = FileChannel.open(root.resolve(FILE_NAME + PATHS_SUFFIX),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException | RuntimeException e) {
+            t.close();   // блокировка снимается вместе с каналом
+            throw e;
+        }
+        ArchiveIndex ix = new ArchiveIndex(root, t, p, owner);
+        try {
+            if (ix.load(reset)) ix.built = ix.indexTree();
+        } catch (IOException | RuntimeException e) {
+            ix.close();
+            throw e;
+        }
+        return ix;
+    }
+
+    /** Построить индекс заново по содержимому архива. Возвращает число проиндексированных файлов. */
+    public static long rebuild(Path root) throws IOException {
+        // файлы не удаляем, а обнуляем под блокировкой: иначе можно отнять индекс у идущего прогона
+        try (ArchiveIndex ix = open(root, true)) {
+            return ix.built;
+        }
+    }
+
+    /** Сколько файлов проиндексировано при открытии; -1 — индекс был и просто открыт. */
+    public long built() {
+        return built;
+    }
+
+    /** Добавить в пустой индекс всё содержимое архива (кроме служебных файлов). */
+    private long indexTree() throws IOException {
+        try (Stream<Path> s = Files.walk(root)) {
+            return s.parallel()
+                    .filter(p -> !p.getFileName().toString().startsWith(FILE_NAME))
+                    .filter(p -> !p.getFileName().toString().endsWith(SortEngine.PART_SUFFIX))
+                    .filter(p -> !p.startsWith(root.resolve(JobManifest.DIR)))
+                    .filter(Files::isRegularFile)
+                    .mapToLong(p -> {
+                        try {
+                            long size = Files.size(p);
+                            if (size == 0) return 0;
+                            add(new Probe(size, ContentHash.partial(p), null), p);
+                            return 1;
+                        } catch (IOException e) {
+                            return 0; // нечитаемый файл просто не попадёт в индекс
+                        }
+                    })
+                    .sum();
+        }
+    }
+
+    /** true — индекс начат заново (не было, повреждён или reset) и пока пуст. */
+    private boolean load(boolean reset) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER);
+        boolean valid = !reset && table.size() >= HEADER && table.read(h, 0) == HEADER
+                && h.getInt(0) == MAGIC && h.getInt(4) == 1;
+        int cap = valid ? (int) h.getLong(8) : 0;
+        valid = valid && cap >= MIN_CAPACITY && Integer.bitCount(cap) == 1
+                && table.size() >= HEADER + (long) cap * SLOT && paths.size() >= 4;
+        if (!valid) {
+            table.truncate(0);
+            paths.truncate(0);
+            paths.write(ByteBuffer.allocate(4).putInt(0, MAGIC), 0); // смещение 0 — «пустой слот»
+            cap = MIN_CAPACITY;
+        }
+        pathsEnd = paths.size();
+        remap(cap);
+        if (!valid) {
+            map.putInt(0, MAGIC).putInt(4, 1).putLong(8, cap).putLong(16, 0);
+        }
+        count = (int) Math.min(Math.max(map.getLong(16), 0), capacity);
+        return !valid;
+    }
+
+    private void remap(int cap) throws IOException {
+        map = table.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) cap * SLOT);
+        capacity = cap;
+    }
+
+    /**
+     * Есть ли в архиве файл с тем же содержимым? Читает 128 КБ источника; полные хэши
+     * (источника и архивного файла) — только если совпали размер и partial.
+     */
+    Probe probe(Path src) throws IOException {
+        long size = Files.size(src);
+        if (size == 0) return new Probe(0, 0, null);
+        long partial = ContentHash.partial(src);
+        lookups.incrementAndGet();
+
+        List<long[]> candidates = new ArrayList<>(2); // {slot, full, pathOff}
+        lock.readLock().lock();
+        try {
+            int mask = capacity - 1;
+            for (int i = index(size, partial) & mask, n = 0; n < capacity; i = (i + 1) & mask, n++) {
+                int at = HEADER + i * SLOT;
+                long off = map.getLong(at + 24);
+                if (off == 0) break;
+                if (map.getLong(at) == size && map.getLong(at + 8) == partial) {
+                    candidates.add(new long[]{i, map.getLong(at + 16), off});
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long srcFull = 0;
+        for (long[] c : candidates) {
+            Path p = readPath(c[2]);
+            if (p == null) continue;
+            try {
+                if (Files.size(p) != size) continue; // файл в архиве заменили
+                long full = c[1];
+                if (full == 0) {
+                    full = norm(ContentHash.full(p));
+                    storeFull((int) c[0], c[2], full);
+                }
+                if (srcFull == 0) srcFull = norm(ContentHash.full(src));
+                if (full == srcFull && Files.mismatch(p, src) == -1) {
+                    hits.incrementAndGet();
+                    return new Probe(size, partial, p);
+                }
+            } catch (NoSuchFileException e) {
+                // из архива удалили — запись устарела, rebuild её уберёт
+            }
+        }
+        return new Probe(size, partial, null);
+    }
+
+    /** Добавить разложенный файл (placed) с уже посчитанными размером и partial. */
+    void add(Probe probe, Path placed) throws IOException {
+        if (probe.size() == 0) return;
+        String rel = root.relativize(placed).toString().replace('\\', '/');
+        byte[] b = rel.getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF) return;
+
+        lock.writeLock().lock();
+        try {
+            if ((count + 1) * 2L > capacity) {
+                if (capacity < MAX_CAPACITY) grow();
+                else if ((count + 1) * 10L > capacity * 9L) return; // предел: дальше не индексируем
+            }
+            long off = pathsEnd;
+            ByteBuffer rec = ByteBuffer.allocate(2 + b.length).putShort((short) b.length).put(b).flip();
+            while (rec.hasRemaining()) paths.write(rec, off + rec.position());
+            pathsEnd += 2 + b.length;
+
+            insert(probe.size(), probe.partial(), 0, off);
+            count++;
+            map.putLong(16, count);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Удвоение таблицы на месте: файл только растёт (на Windows отображённый файл не укоротить). */
+    private void grow() throws IOException {
+        long[] all = new long[count * 4];
+        int n = 0;
+        for (int i = 0; i < capacity; i++) {
+            int at = HEADER + i * SLOT;
+            if (map.getLong(at + 24) == 0) continue;
+            for (int k = 0; k < 4; k++) all[n * 4 + k] = map.getLong(at + k * 8);
+            n++;
+        }
+        int old = capacity;
+        remap(capacity * 2);
+        for (int i = 0; i < old; i++) map.putLong(HEADER + i * SLOT + 24, 0);
+        map.putLong(8, capacity);
+        for (int i = 0; i < n; i++) insert(all[i * 4], all[i * 4 + 1], all[i * 4 + 2], all[i * 4 + 3]);
+    }
+
+    private void insert(long size, long partial, long full, long off) {
+        int mask = capacity - 1;
+        int i = index(size, partial) & mask;
+        while (map.getLong(HEADER + i * SLOT + 24) != 0) i = (i + 1) & mask;
+        int at = HEADER + i * SLOT;
+        map.putLong(at, size).putLong(at + 8, partial).putLong(at + 16, full).putLong(at + 24, off);
+    }
+
+    /** Запомнить полный хэш; если таблицу тем временем перестроили — просто не запоминаем (посчитаем снова). */
+    private void storeFull(int slot, long off, long full) {
+        lock.writeLock().lock();
+        try {
+            if (slot < capacity && map.getLong(HEADER + slot * SLOT + 24) == off) {
+                map.putLong(HEADER + slot * SLOT + 16, full);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Path readPath(long off) {
+        try {
+            if (off < 4 || off + 2 > pathsEnd) return null;
+            ByteBuffer len = ByteBuffer.allocate(2);
+            if (paths.read(len, off) != 2) return null;
+            int n = len.getShort(0) & 0xFFFF;
+            ByteBuffer b = ByteBuffer.allocate(n);
+            while (b.hasRemaining()) {
+                if (paths.read(b, off + 2 + b.position()) < 0) return null;
+            }
+            return root.resolve(new String(b.array(), StandardCharsets.UTF_8));
+        } catch (IOException | InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static int index(long size, long partial) {
+        long h = (size * 0x9E3779B97F4A7C15L) ^ partial;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /** 0 в слоте значит «полный хэш не считали». */
+    private static long norm(long full) {
+        return full == 0 ? 1 : full;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (map != null) map.force();
+            if (owner.isValid()) owner.release();
+            table.close();
+            paths.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
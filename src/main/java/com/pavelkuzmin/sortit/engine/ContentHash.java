@@ -0,0 +1,87 @@
+package com.pavelkuzmin.sortit.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Быстрый некриптографический 64-битный хэш содержимого файла (словами по 8 байт, перемешивание
+ * как в murmur3 fmix64). Для дублей его хватает: сравниваем только файлы одного размера
+ * с одинаковыми началом и концом. Значение стабильно между запусками — его можно хранить.
+ */
+final class ContentHash {
+    private ContentHash() {}
+
+    /** Сколько байт берём с начала и с конца для частичного хэша. */
+    static final int EDGE = 64 * 1024;
+
+    private static final long K1 = 0x9E3779B97F4A7C15L;
+    private static final long K2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final ThreadLocal<ByteBuffer> BUF = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(FileCopier.BUFFER).order(ByteOrder.LITTLE_ENDIAN));
+
+    /** Хэш первых и последних EDGE байт (маленький файл — целиком). */
+    static long partial(Path p) throws IOException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size <= 2L * EDGE) return hash(ch, 0, size, seed(size));
+            long h = hash(ch, 0, EDGE, seed(size));
+            return hash(ch, size - EDGE, EDGE, h);
+        }
+    }
+
+    /** Хэш всего файла. */
+    static long full(Path p) throws IOException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            return hash(ch, 0, size, seed(size));
+        }
+    }
+
+    private static long seed(long size) {
+        return fmix(size * K1);
+    }
+
+    private static long hash(FileChannel ch, long from, long count, long h) throws IOException {
+        ByteBuffer buf = BUF.get();
+        long pos = from, end = from + count;
+        while (pos < end) {
+            buf.clear();
+            if (end - pos < buf.capacity()) buf.limit((int) (end - pos));
+            // добираем буфер до конца: иначе граница слов зависела бы от того, как прочиталось
+            while (buf.hasRemaining()) {
+                int r = ch.read(buf, pos);
+                if (r <= 0) break; // файл укоротился
+                pos += r;
+            }
+            if (buf.position() == 0) break;
+            buf.flip();
+            while (buf.remaining() >= 8) h = mix(h, buf.getLong());
+            if (buf.hasRemaining()) {
+                // хвост короче слова (бывает только в самом конце диапазона)
+                long v = 0;
+                for (int s = 0; buf.hasRemaining(); s += 8) v |= (buf.get() & 0xFFL) << s;
+                h = mix(h, v);
+            }
+        }
+        return fmix(h ^ (pos - from));
+    }
+
+    private static long mix(long h, long v) {
+        h ^= Long.rotateLeft(v * K1, 31) * K2;
+        return Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+    }
+
+    private static long fmix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,289 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.DateSource;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Дисковый кэш найденных дат: (путь, источник даты, размер, mtime) → LocalDate (или "даты нет").
+ * Файл лежит рядом с sortit.json. Формат — бинарный журнал с дозаписью: в конец дописываются
+ * только промахи, при закрытии журнал при необходимости переписывается целиком
+ * (сжатие + вытеснение давно не использованных записей сверх maxEntries).
+ * Попадание ничего не дописывает: номер прогона последнего использования (по нему идёт
+ * вытеснение) обновляется при закрытии прямо в записи, на месте. Так файл растёт
+ * с числом разных файлов, а не прогонов.
+ * Пока кэш открыт, файл заблокирован (FileLock): второй экземпляр (окно и --watch)
+ * получает IOException и работает без кэша.
+ */
+public class DateCache implements Closeable {
+
+    public static final String FILE_NAME = "sortit-dates.cache";
+
+    private static final int MAGIC = 0x53444331; // "SDC1"
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final class Entry {
+        final long size;
+        final long mtime;
+        final int epochDay;
+        volatile int stamp;   // номер прогона, в котором запись последний раз пригодилась
+        volatile long stampAt = -1;   // где в файле лежит stamp этой записи (-1 — ещё не записана)
+
+        Entry(long size, long mtime, int epochDay, int stamp) {
+            this.size = size;
+            this.mtime = mtime;
+            this.epochDay = epochDay;
+            this.stamp = stamp;
+        }
+    }
+
+    private final FileChannel ch;
+    private final FileLock lock;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> touched = new ConcurrentLinkedQueue<>();   // попадания со старым stamp
+    private final int stamp;
+    private int records;               // записей в файле (включая устаревшие дубли)
+    private long end;                  // конец последней целой записи
+    private DataOutputStream out;      // дозапись, открывается лениво
+    private long outBase;              // смещение в файле, с которого пишет out
+
+    public final AtomicLong hits = new AtomicLong();
+    public final AtomicLong misses = new AtomicLong();
+
+    private DateCache(FileChannel ch, FileLock lock, int maxEntries) {
+        this.ch = ch;
+        this.lock = lock;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.stamp = load();
+    }
+
+    /**
+     * Открыть (или создать) кэш. Повреждённый/чужой файл просто игнорируется.
+     * Файл занят другим экземпляром или не открывается — IOException (работать без кэша).
+     */
+    public static DateCache open(Path file, int maxEntries) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = ch.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            ch.close();
+            throw new IOException(file + " is in use by another SortIt instance");
+        }
+        return new DateCache(ch, lock, maxEntries);
+    }
+
+    /** null — промах; Optional.empty() — известно, что даты у файла нет. */
+    public Optional<LocalDate> get(Path p, DateSource source, long size, long mtime) {
+        Entry e = entries.get(key(p, source));
+        if (e == null || e.size != size || e.mtime != mtime) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        if (e.stamp != stamp) {
+            e.stamp = stamp;
+            touched.add(e);
+        }
+        return e.epochDay == NO_DATE ? Optional.empty() : Optional.of(LocalDate.ofEpochDay(e.epochDay));
+    }
+
+    public void put(Path p, DateSource source, long size, long mtime, Optional<LocalDate> date) {
+        String key = key(p, source);
+        Entry e = new Entry(size, mtime, date.map(d -> (int) d.toEpochDay()).orElse(NO_DATE), stamp);
+        entries.put(key, e);
+        append(key, e);
+    }
+
+    private synchronized void append(String key, Entry e) {
+        try {
+            if (out == null) out = openForAppend();
+            writeRecord(out, key, e);
+            e.stampAt = outBase + out.size() - 4;
+            records++;
+        } catch (IOException ignored) {
+            // кэш — только ускорение; не можем писать — работаем без него
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (out != null) out.flush();
+            // попаданий много (повторный прогон той же папки) — одна последовательная
+            // перезапись дешевле, чем запись stamp'а в каждую запись по отдельности
+            if (entries.size() > maxEntries || records > entries.size() * 2L || touched.size() > records / 8) {
+                compact();              // перепишет и свежие stamp'ы
+            } else {
+                writeStamps();
+            }
+        } catch (IOException ignored) {
+            // кэш — подсказка; в худшем случае вытеснение ошибётся в давности записи
+        } finally {
+            out = null;
+            try {
+                if (lock.isValid()) lock.release();
+                ch.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    // ===== файл =====
+
+    private static String key(Path p, DateSource source) {
+        return source.ordinal() + "|" + p.toAbsolutePath();
+    }
+
+    private int load() {
+        int maxStamp = 0;
+        long good = 0;
+        boolean broken = false;
+        try {
+            if (ch.size() == 0) return 1;
+            ch.position(0);
+            // поток над каналом не закрываем: закрылся бы и канал (и блокировка)
+            CountingInput counted = new CountingInput(new BufferedInputStream(Channels.newInputStream(ch), 1 << 16));
+            DataInputStream in = new DataInputStream(counted);
+            if (in.readInt() != MAGIC) return 1;
+            good = counted.count;
+            while (true) {
+                String key;
+                try { key = in.readUTF(); } catch (EOFException eof) { broken = counted.count > good; break; }
+                Entry e = new Entry(in.readLong(), in.readLong(), in.readInt(), in.readInt());
+                e.stampAt = counted.count - 4;
+                entries.put(key, e);
+                maxStamp = Math.max(maxStamp, e.stamp);
+                records++;
+                good = counted.count;
+            }
+        } catch (IOException ignored) {
+            // обрезанный хвост (например, после падения) — берём то, что успели прочитать
+            broken = true;
+        }
+        end = good;
+        if (broken) truncate(good);
+        return maxStamp + 1;
+    }
+
+    /**
+     * Отрезать недописанную запись: иначе новые записи легли бы за битыми байтами
+     * и при следующем открытии не прочитались бы.
+     */
+    private void truncate(long good) {
+        if (good == 0) {
+            records = 0; // даже заголовок не цел — файл начнётся заново
+            return;
+        }
+        try {
+            ch.truncate(good);
+        } catch (IOException e) {
+            records = 0; // не смогли обрезать — перепишем файл с нуля при первой записи
+            entries.clear();
+        }
+    }
+
+    /** Сколько байт прочитано — чтобы знать границу последней целой записи. */
+    private static final class CountingInput extends FilterInputStream {
+        long count;
+
+        CountingInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long k = super.skip(n);
+            count += k;
+            return k;
+        }
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        boolean fresh = records == 0;
+        if (fresh) {
+            entries.values().forEach(e -> e.stampAt = -1);
+            ch.truncate(0);
+            end = 0;
+        }
+        ch.position(end);
+        DataOutputStream d = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+        outBase = end;
+        if (fresh) {
+            d.writeInt(MAGIC);
+        }
+        return d;
+    }
+
+    private static void writeRecord(DataOutputStream d, String key, Entry e) throws IOException {
+        d.writeUTF(key);
+        d.writeLong(e.size);
+        d.writeLong(e.mtime);
+        d.writeInt(e.epochDay);
+        d.writeInt(e.stamp);
+    }
+
+    /** Обновить stamp у записей, пригодившихся в этом прогоне, — на месте, без дозаписи. */
+    private void writeStamps() throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4);
+        for (Entry e : touched) {
+            if (e.stampAt < 0) continue;
+            b.clear();
+            b.putInt(0, e.stamp);
+            ch.write(b, e.stampAt);
+        }
+    }
+
+    /**
+     * Переписать файл только живыми записями; сверх лимита выбрасываем самые давние.
+     * Пишем на месте, под той же блокировкой (замена файла через rename сняла бы её):
+     * сначала обрезаем до нуля, так что после сбоя посередине останется целый префикс.
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, Entry>> live = new ArrayList<>(entries.entrySet());
+        if (live.size() > maxEntries) {
+            live.sort(Comparator.comparingInt((Map.Entry<String, Entry> x) -> x.getValue().stamp).reversed());
+            live = live.subList(0, maxEntries);
+        }
+        ch.truncate(0);
+        ch.position(0);
+        DataOutputStream d = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+        d.writeInt(MAGIC);
+        for (Map.Entry<String, Entry> x : live) writeRecord(d, x.getKey(), x.getValue());
+        d.flush();
+        records = live.size();
+    }
+}
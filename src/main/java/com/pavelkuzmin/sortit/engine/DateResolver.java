@@ -0,0 +1,105 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.DateSource;
+import com.pavelkuzmin.sortit.core.FilenameDateParser;
+import com.pavelkuzmin.sortit.core.MediaDateExtractor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Optional;
+
+/** Определение даты файла по выбранному источнику (метаданные / имя / дата создания). */
+public final class DateResolver {
+    private DateResolver() {}
+
+    public static Optional<LocalDate> resolve(Path p, DateSource source) {
+        return resolve(p, source, null);
+    }
+
+    /** С кэшем: сперва ищем по (путь, размер, mtime), разбор — только при промахе. */
+    public static Optional<LocalDate> resolve(Path p, DateSource source, DateCache cache) {
+        return resolve(p, source, cache, null);
+    }
+
+    /**
+     * С замерами: разбор пишется в стадию "date SRC .ext", поиск в кэше — в "date cache";
+     * плюс событие JFR на файл.
+     */
+    public static Optional<LocalDate> resolve(Path p, DateSource source, DateCache cache, StageMetrics metrics) {
+        SortEvents.DateExtraction ev = new SortEvents.DateExtraction();
+        ev.begin();
+        long t0 = System.nanoTime();
+        boolean[] cached = {false};
+        Optional<LocalDate> d = lookup(p, source, cache, cached);
+        ev.end();
+        String type = metrics != null || ev.shouldCommit() ? StageMetrics.fileType(p.getFileName().toString()) : null;
+        if (metrics != null) metrics.record(cached[0] ? "date cache" : "date " + source + " " + type, t0);
+        if (ev.shouldCommit()) {
+            ev.file = p.toString();
+            ev.dateSource = source.name();
+            ev.fileType = type;
+            ev.cached = cached[0];
+            ev.found = d.isPresent();
+            ev.commit();
+        }
+        return d;
+    }
+
+    private static Optional<LocalDate> lookup(Path p, DateSource source, DateCache cache, boolean[] cached) {
+        if (cache == null) return compute(p, source);
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (Exception e) {
+            return compute(p, source);
+        }
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis();
+
+        Optional<LocalDate> hit = cache.get(p, source, size, mtime);
+        if (hit != null) {
+            cached[0] = true;
+            return hit;
+        }
+
+        Optional<LocalDate> d = source == DateSource.CREATED ? fromCreated(attrs) : compute(p, source);
+        cache.put(p, source, size, mtime, d);
+        return d;
+    }
+
+    private static Optional<LocalDate> compute(Path p, DateSource source) {
+        return switch (source) {
+            case METADATA -> MediaDateExtractor.readDate(p.toFile());
+            case FILENAME -> FilenameDateParser.parse(p.getFileName().toString());
+            case CREATED  -> readCreated(p);
+        };
+    }
+
+    /** Ключ сообщения об ошибке, если дату получить не удалось. */
+    public static String errorKey(DateSource source) {
+        return switch (source) {
+            case METADATA -> "error.no.metadata";
+            case CREATED  -> "error.no.created";
+            case FILENAME -> "error.no.date.in.name";
+        };
+    }
+
+    private static Optional<LocalDate> readCreated(Path p) {
+        try {
+            return fromCreated(Files.readAttributes(p, BasicFileAttributes.class));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<LocalDate> fromCreated(BasicFileAttributes attrs) {
+        FileTime ct = attrs.creationTime();
+        if (ct == null) return Optional.empty();
+        return Optional.of(ct.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+    }
+}
@@ -0,0 +1,77 @@
+package com.pavelkuzmin.sortit.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Папки назначения, которые за прогон уже созданы/проверены. createDirectories вызывается
+ * один раз на папку, а не на файл — на SMB/NFS каждый такой вызов стоит нескольких round-trip'ов.
+ */
+final class DestDirs {
+
+    private final Set<Path> ensured = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger mkdirs = new AtomicInteger();
+    private final StageMetrics metrics;
+
+    DestDirs(StageMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Гарантирует, что папка есть; повторные вызовы для той же папки ничего не стоят. */
+    void ensure(Path dir) throws IOException {
+        if (ensured.contains(dir)) return;
+        mkdirs.incrementAndGet();
+        SortEvents.CreateDirectories ev = new SortEvents.CreateDirectories();
+        ev.begin();
+        long t0 = System.nanoTime();
+        Files.createDirectories(dir);
+        metrics.record("mkdir", t0);
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.directory = dir.toString();
+            ev.commit();
+        }
+        ensured.add(dir);
+    }
+
+    /**
+     * Пакетное создание сразу всех папок на нескольких потоках (задержки сети перекрываются).
+     * Ошибки не бросаем: такая папка останется неотмеченной, и перенос файла сообщит о ней сам.
+     */
+    void precreate(Collection<Path> dirs, int threads) throws InterruptedException {
+        List<Path> todo = new ArrayList<>();
+        for (Path d : dirs) if (!ensured.contains(d)) todo.add(d);
+        if (todo.isEmpty()) return;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, todo.size())));
+        try {
+            List<Future<?>> fs = new ArrayList<>(todo.size());
+            for (Path d : todo) {
+                fs.add(pool.submit(() -> {
+                    try { ensure(d); } catch (IOException ignored) {}
+                }));
+            }
+            for (Future<?> f : fs) {
+                try { f.get(); } catch (ExecutionException ignored) {}
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Сколько раз реально вызывали createDirectories. */
+    int mkdirs() {
+        return mkdirs.get();
+    }
+}
@@ -0,0 +1,101 @@
+package com.pavelkuzmin.sortit.engine;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Копирование файла через FileChannel.transferTo: ядро копирует само (sendfile/copy_file_range),
+ * данные не проходят через Java-кучу. Если transferTo не двигается (некоторые ФС и сетевые тома),
+ * дальше идём через прямой буфер. Копируем кусками — между ними сообщаем прогресс
+ * и проверяем отмену, так что многогигабайтное видео не «висит» без обратной связи.
+ */
+final class FileCopier {
+    private FileCopier() {}
+
+    /** Кусок для transferTo: прогресс и отмена — не реже, чем раз на CHUNK байт. */
+    static final long CHUNK = 32L << 20;
+
+    /** Прямой буфер запасного пути; один на поток переноса. */
+    static final int BUFFER = 1 << 20;
+
+    private static final ThreadLocal<ByteBuffer> BUF = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER));
+
+    /**
+     * Копирует src в dst (dst перезаписывается) и переносит на него время изменения/доступа/создания.
+     * progress получает приращения скопированных байт; durable — fsync перед закрытием.
+     * Возвращает размер файла. Если размер исходника за время копирования изменился — IOException.
+     */
+    static long copy(Path src, Path dst, LongConsumer progress, BooleanSupplier cancelled,
+                     boolean durable) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(src, BasicFileAttributes.class);
+        long pos = 0;
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dst, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            boolean zeroCopy = true;
+            while (pos < size) {
+                if (cancelled.getAsBoolean()) throw new InterruptedIOException("Cancelled");
+                long n = 0;
+                if (zeroCopy) {
+                    n = in.transferTo(pos, Math.min(CHUNK, size - pos), out);
+                    if (n <= 0) zeroCopy = false;
+                }
+                if (!zeroCopy) n = copyBuffered(in, out, pos, Math.min(CHUNK, size - pos));
+                if (n <= 0) break; // файл укоротился во время копирования
+                pos += n;
+                progress.accept(n);
+            }
+            // исходник меняли во время копирования — неполную копию нельзя ставить на место
+            // (а при переносе — удалять по ней исходник): пусть сработает обычная ошибка
+            long now = in.size();
+            if (pos != size || now != size) {
+                throw new IOException("Source changed during copy: copied " + pos + " of " + now + " bytes");
+            }
+            if (durable) out.force(true);
+        }
+        preserveTimes(dst, attrs);
+        return pos;
+    }
+
+    private static long copyBuffered(FileChannel in, FileChannel out, long pos, long count) throws IOException {
+        ByteBuffer buf = BUF.get();
+        long done = 0;
+        while (done < count) {
+            buf.clear();
+            if (count - done < buf.capacity()) buf.limit((int) (count - done));
+            int r = in.read(buf, pos + done);
+            if (r < 0) break;
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf);
+            done += r;
+        }
+        return done;
+    }
+
+    /** fsync папки, чтобы пережил сбой и сам rename. Где папку так не открыть (Windows) — молча пропускаем. */
+    static void syncDir(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+
+    /** Не все ФС дают ставить время (SMB, FAT — создание); копию из-за этого не проваливаем. */
+    private static void preserveTimes(Path dst, BasicFileAttributes a) {
+        try {
+            Files.getFileAttributeView(dst, BasicFileAttributeView.class)
+                    .setTimes(a.lastModifiedTime(), a.lastAccessTime(), a.creationTime());
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.core.SourceWalker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Наблюдение за папкой-источником (WatchService) для непрерывного режима.
+ * События только отмечают файл как «ожидающий»; сам файл проверяется раз в такт, и
+ * наружу отдаётся, когда размер и mtime не менялись settle мс и файл открывается на
+ * чтение (на Windows пишущая программа держит его занятым). Работа пропорциональна
+ * новым файлам: полный обход — только при OVERFLOW (очередь событий ОС переполнилась).
+ * Файл, уже отданный с теми же размером и mtime, повторно не отдаётся (актуально для
+ * копирования, когда исходник остаётся на месте).
+ */
+final class FolderWatcher implements Closeable {
+
+    private record Stamp(long size, long mtime) {}
+
+    private static final class Seen {
+        Stamp stamp;
+        long since;   // когда stamp последний раз менялся, нс
+    }
+
+    private final SourceWalker walker;
+    private final Path skip;          // поддерево назначения, если оно внутри источника
+    private final long settleNanos;
+    private final WatchService ws;
+    private final Map<WatchKey, Path> dirs = new HashMap<>();
+    private final Set<Path> watched = new HashSet<>();
+    private final Map<Path, Seen> pending = new LinkedHashMap<>();   // в порядке появления
+    private final Map<Path, Stamp> handed = new HashMap<>();
+
+    long events;     // событий ОС за всё время
+
+    FolderWatcher(Path root, SourceWalker walker, Path skip, long settleMillis) throws IOException {
+        this.walker = walker;
+        Path top = root.toAbsolutePath().normalize();
+        Path d = skip == null ? null : skip.toAbsolutePath().normalize();
+        this.skip = d != null && d.startsWith(top) && !d.equals(top) ? d : null;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, settleMillis));
+        this.ws = root.getFileSystem().newWatchService();
+        try {
+            watchTree(root);
+        } catch (IOException | RuntimeException e) {
+            ws.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Один такт: ждёт события до settle/2 мс, разбирает накопившиеся и возвращает файлы,
+     * которые успокоились (может быть пусто). Вызывать из одного потока.
+     */
+    List<Path> poll() throws IOException, InterruptedException {
+        WatchKey key = ws.poll(Math.max(50, TimeUnit.NANOSECONDS.toMillis(settleNanos) / 2), TimeUnit.MILLISECONDS);
+        while (key != null) {
+            drain(key);
+            key = ws.poll();
+        }
+        return settled();
+    }
+
+    /** Файлов ждут успокоения. */
+    int pending() {
+        return pending.size();
+    }
+
+    private void drain(WatchKey key) throws IOException {
+        Path dir = dirs.get(key);
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            events++;
+            if (ev.kind() == OVERFLOW) {
+                // события потеряны — один раз пересматриваем всё, что наблюдаем
+                for (Path d : List.copyOf(dirs.values())) offerDir(d);
+                continue;
+            }
+            if (dir == null) continue;
+            Path p = dir.resolve((Path) ev.context());
+            if (ev.kind() == ENTRY_DELETE) {
+                pending.remove(p);
+                handed.remove(p);
+            } else if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                if (ev.kind() == ENTRY_CREATE && walker.descends(p) && !skipped(p)) watchTree(p);
+            } else {
+                offer(p);
+            }
+        }
+        if (!key.reset()) watched.remove(dirs.remove(key)); // папку удалили
+    }
+
+    private void offer(Path p) {
+        if (pending.containsKey(p) || skipped(p) || !walker.accepts(p)) return;
+        String name = p.getFileName().toString();
+        if (name.endsWith(SortEngine.PART_SUFFIX) || name.startsWith(ArchiveIndex.FILE_NAME)) return;
+        pending.put(p, new Seen());
+    }
+
+    /** Новая подпапка: наблюдаем её и всё, что в ней уже успело появиться до регистрации. */
+    private void watchTree(Path dir) throws IOException {
+        if (!watched.add(dir)) return;
+        dirs.put(dir.register(ws, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+        offerDir(dir);
+    }
+
+    private void offerDir(Path dir) throws IOException {
+        List<Path> subdirs = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                    if (walker.descends(p) && !skipped(p) && !watched.contains(p)) subdirs.add(p);
+                } else if (Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)) {
+                    offer(p);
+                }
+            }
+        } catch (NoSuchFileException | DirectoryIteratorException e) {
+            return; // папку успели удалить
+        }
+        for (Path d : subdirs) watchTree(d);
+    }
+
+    private List<Path> settled() {
+        List<Path> ready = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Seen>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Seen> e = it.next();
+            Path p = e.getKey();
+            Seen s = e.getValue();
+            Stamp st;
+            try {
+                BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!a.isRegularFile()) { it.remove(); continue; }
+                st = new Stamp(a.size(), a.lastModifiedTime().toMillis());
+            } catch (IOException ex) {
+                it.remove(); // исчез, пока ждали
+                continue;
+            }
+            if (!st.equals(s.stamp)) {
+                s.stamp = st;
+                s.since = now;
+                continue;
+            }
+            if (now - s.since < settleNanos || !readable(p)) continue;
+            it.remove();
+            if (st.equals(handed.put(p, st))) continue; // уже отдавали ровно этот файл
+            ready.add(p);
+        }
+        return ready;
+    }
+
+    private static boolean readable(Path p) {
+        try {
+            FileChannel.open(p, StandardOpenOption.READ).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean skipped(Path p) {
+        return skip != null && p.toAbsolutePath().normalize().startsWith(skip);
+    }
+
+    @Override
+    public void close() throws IOException {
+        ws.close();
+    }
+}
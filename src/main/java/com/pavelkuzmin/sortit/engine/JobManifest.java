@@ -0,0 +1,208 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.TransferMode;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Возобновляемая задача: папка .sortit-job в корне назначения.
+ *  - plan.tsv — манифест (PlanFile): пишется и сбрасывается на диск (fsync) до первого переноса,
+ *    поэтому после перезапуска даты заново не вычисляются;
+ *  - job.properties — режим и опции, с которыми задача начата;
+ *  - checkpoint — отметки о готовых строках плана: «водяной знак» (смещение первой
+ *    незавершённой строки) + смещения уже готовых строк после него. Переписывается
+ *    атомарно (tmp + fsync + rename) раз в CHECKPOINT_MS.
+ * Перезапуск читает план с водяного знака — время зависит от остатка, а не от размера задачи.
+ * Что сделано после последней отметки, досчитывает SortEngine (recover: частичные копии
+ * откатываются, завершённые — дописываются).
+ */
+final class JobManifest implements Closeable {
+
+    static final String DIR = ".sortit-job";
+    private static final int MAGIC = 0x534A4331; // "SJC1"
+    private static final long CHECKPOINT_MS = 250;
+
+    private final Path dir;
+    private final NavigableSet<Long> open = new ConcurrentSkipListSet<>(); // прочитаны, не завершены
+    private final NavigableSet<Long> doneAfter = new ConcurrentSkipListSet<>(); // завершены после знака
+    private volatile long frontier;   // смещение следующей непрочитанной строки
+    private volatile boolean dirty;
+    private long watermark;
+    private Thread saver;
+    private volatile boolean closing;
+    private volatile IOException failure;
+
+    private JobManifest(Path dir) {
+        this.dir = dir;
+    }
+
+    static JobManifest at(Path destRoot) {
+        return new JobManifest(destRoot.resolve(DIR));
+    }
+
+    /** Есть незавершённая задача (манифест дописан до конца). */
+    boolean exists() {
+        return Files.isRegularFile(plan());
+    }
+
+    Path plan() {
+        return dir.resolve("plan.tsv");
+    }
+
+    Path planDraft() {
+        return dir.resolve("plan.tsv.tmp");
+    }
+
+    /** Новая задача: папка и её параметры. План пишется в planDraft() и фиксируется commitPlan(). */
+    void create(SortJob job) throws IOException {
+        Files.createDirectories(dir);
+        Properties p = new Properties();
+        p.setProperty("mode", job.mode.name());
+        p.setProperty("resolveDuplicates", Boolean.toString(job.resolveDuplicates));
+        p.setProperty("useArchiveIndex", Boolean.toString(job.useArchiveIndex));
+        Path tmp = dir.resolve("job.properties.tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, "SortIt job");
+        }
+        durableReplace(tmp, dir.resolve("job.properties"));
+    }
+
+    /** Параметры исходной задачи важнее текущих настроек: перенос не должен стать копией. */
+    void restoreSettings(SortJob job) throws IOException {
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve("job.properties"))) {
+            p.load(in);
+        }
+        try {
+            job.mode = TransferMode.valueOf(p.getProperty("mode", job.mode.name()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(dir + ": bad job.properties");
+        }
+        job.resolveDuplicates = Boolean.parseBoolean(p.getProperty("resolveDuplicates"));
+        job.useArchiveIndex = Boolean.parseBoolean(p.getProperty("useArchiveIndex"));
+    }
+
+    void commitPlan() throws IOException {
+        try (FileChannel ch = FileChannel.open(planDraft(), StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        durableReplace(planDraft(), plan());
+    }
+
+    /**
+     * Загрузить отметки прошлых запусков и начать периодически сохранять новые.
+     * Возвращает смещение, с которого читать план; уже готовые строки после него — isDone().
+     */
+    long resume() throws IOException {
+        Path cp = dir.resolve("checkpoint");
+        watermark = 0;
+        if (Files.isRegularFile(cp)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cp)))) {
+                if (in.readInt() != MAGIC) throw new IOException(cp + ": bad checkpoint");
+                watermark = in.readLong();
+                for (int n = in.readInt(); n > 0; n--) doneAfter.add(in.readLong());
+            }
+        }
+        frontier = watermark;
+        saver = new Thread(this::saveLoop, "sortit-checkpoint");
+        saver.setDaemon(true);
+        saver.start();
+        return watermark;
+    }
+
+    /** Строка уже выполнена в прошлый раз. */
+    boolean isDone(long offset) {
+        return doneAfter.contains(offset);
+    }
+
+    /** Строка прочитана и ушла в работу; next — смещение следующей. */
+    void reading(long offset, long next) {
+        open.add(offset);
+        frontier = next;
+    }
+
+    /** Строка пропущена как выполненная раньше. */
+    void skipped(long next) {
+        frontier = next;
+    }
+
+    /** Строка выполнена (успех, дубль или окончательная ошибка). */
+    void committed(long offset) {
+        doneAfter.add(offset);
+        open.remove(offset);
+        dirty = true;
+    }
+
+    private void saveLoop() {
+        try {
+            // без interrupt(): прерванный поток закрыл бы FileChannel посреди fsync
+            while (!closing) {
+                Thread.sleep(CHECKPOINT_MS);
+                if (dirty) save();
+            }
+        } catch (InterruptedException ignored) {
+            // не прерываем
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private synchronized void save() throws IOException {
+        dirty = false;
+        // сначала frontier, потом open: строка попадает в open раньше, чем frontier её минует
+        long f = frontier;
+        Long first = open.isEmpty() ? null : open.first();
+        long mark = first == null ? f : Math.min(first, f);
+        doneAfter.headSet(mark).clear();
+        watermark = mark;
+
+        Path tmp = dir.resolve("checkpoint.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            Long[] done = doneAfter.toArray(new Long[0]);
+            out.writeInt(MAGIC);
+            out.writeLong(mark);
+            out.writeInt(done.length);
+            for (Long d : done) out.writeLong(d);
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        durableReplace(tmp, dir.resolve("checkpoint"));
+    }
+
+    /** Задача выполнена целиком — манифест больше не нужен. */
+    void finish() throws IOException {
+        close();
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    /** Последняя отметка и остановка. */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        if (saver != null) {
+            try {
+                saver.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            saver = null;
+            if (failure != null) throw failure;
+            save();
+        }
+    }
+
+    private void durableReplace(Path tmp, Path target) throws IOException {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileCopier.syncDir(dir);
+    }
+}
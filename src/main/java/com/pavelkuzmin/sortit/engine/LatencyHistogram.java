@@ -0,0 +1,71 @@
+package com.pavelkuzmin.sortit.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма длительностей без блокировок: логарифмические корзины по степеням двойки,
+ * каждая поделена на SUB равных частей (ошибка перцентиля — не больше 1/SUB ≈ 6%).
+ * Память постоянная (~5 КБ) при любом числе записей; пишут любые потоки.
+ * Единица — микросекунды: от 1 мкс до ~12 суток.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXP = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXP + 1) * SUB);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long us = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(index(us));
+        count.incrementAndGet();
+        totalMicros.addAndGet(us);
+        maxMicros.accumulateAndGet(us, Math::max);
+    }
+
+    private static int index(long us) {
+        if (us < SUB) return (int) us;                   // первые корзины — по 1 мкс
+        int exp = 63 - Long.numberOfLeadingZeros(us);    // us в [2^exp, 2^(exp+1))
+        if (exp > MAX_EXP) return (MAX_EXP + 1) * SUB - 1;
+        int sub = (int) (us >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /** Верхняя граница корзины, мкс. */
+    private static long upper(int idx) {
+        if (idx < SUB) return idx;
+        int exp = idx / SUB + SUB_BITS - 1;
+        long sub = idx % SUB;
+        return ((SUB + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long totalMicros() {
+        return totalMicros.get();
+    }
+
+    public long maxMicros() {
+        return maxMicros.get();
+    }
+
+    /** Перцентиль (0..100), мкс: не меньше стольких процентов записей. 0 — записей нет. */
+    public long percentileMicros(double p) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upper(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+}
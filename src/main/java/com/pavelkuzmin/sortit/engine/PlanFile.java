@@ -0,0 +1,237 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.DateSource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * План прогона (--plan): куда уйдёт каждый файл, без mkdir/копирования/переноса.
+ * Текст UTF-8, одна строка на файл, поля через TAB:
+ *
+ *   статус  байт  дата  источник-даты  исходник  цель
+ *
+ * Пути — относительно корней из заголовка (#source, #dest), разделитель '/';
+ * TAB, перевод строки и '\' в именах экранируются. Статус: OK; EXISTS — имя
+ * в назначении уже занято; CLASH — на ту же цель претендует файл выше по плану;
+ * NODATE — дату не нашли (файл упадёт).
+ * В конце — итоги по папкам (#folder) и общий (#total). Тот же файл можно потом
+ * выполнить (--run-plan): даты заново не вычисляются.
+ */
+public final class PlanFile {
+    private PlanFile() {}
+
+    static final String MAGIC = "#sortit-plan 1";
+
+    public enum Status { OK, EXISTS, CLASH, NODATE }
+
+    /** Строка плана; у NODATE нет даты и цели. */
+    record Entry(Status status, long bytes, LocalDate date, Path source, Path target) {}
+
+    /** Корни и параметры, с которыми план строился. */
+    public record Header(Path source, Path dest, String template, DateSource dateSource) {}
+
+    /** Потоковая запись плана; add() вызывают потоки разбора дат параллельно. */
+    static final class Writer implements Closeable {
+        private final BufferedWriter out;
+        private final Header header;
+        private final Map<Path, long[]> folders = new HashMap<>(); // папка → {файлов, байт}
+        private final Set<Path> targets = new HashSet<>();
+        private final long[] totals = new long[4];                  // файлов, байт, конфликтов, без даты
+
+        Writer(Path file, Header header) throws IOException {
+            this.header = header;
+            this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            out.write(MAGIC); out.newLine();
+            out.write("#source\t" + escape(slashes(header.source().toString()))); out.newLine();
+            out.write("#dest\t" + escape(slashes(header.dest().toString()))); out.newLine();
+            out.write("#template\t" + escape(header.template())); out.newLine();
+            out.write("#dateSource\t" + header.dateSource()); out.newLine();
+        }
+
+        /** Записать строку; цель, уже занятая строкой выше, получает CLASH. Возвращает итоговый статус. */
+        synchronized Status add(Entry e) throws IOException {
+            Status status = e.target() != null && !targets.add(e.target()) ? Status.CLASH : e.status();
+            StringBuilder sb = new StringBuilder(160);
+            sb.append(status).append('\t').append(e.bytes()).append('\t')
+              .append(e.date() == null ? "-" : e.date().toString()).append('\t')
+              .append(header.dateSource().name().charAt(0)).append('\t')
+              .append(escape(relative(header.source(), e.source()))).append('\t')
+              .append(e.target() == null ? "-" : escape(relative(header.dest(), e.target())));
+            out.write(sb.toString());
+            out.newLine();
+
+            if (e.target() == null) {
+                totals[3]++;
+                return status;
+            }
+            long[] f = folders.computeIfAbsent(e.target().getParent(), d -> new long[2]);
+            f[0]++;
+            f[1] += e.bytes();
+            totals[0]++;
+            totals[1] += e.bytes();
+            if (status != Status.OK) totals[2]++;
+            return status;
+        }
+
+        synchronized int folders() {
+            return folders.size();
+        }
+
+        /** Итоги по папкам (в порядке имён) и общий итог в хвост файла. */
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                for (Map.Entry<Path, long[]> f : new TreeMap<>(folders).entrySet()) {
+                    out.write("#folder\t" + escape(relative(header.dest(), f.getKey()))
+                            + '\t' + f.getValue()[0] + '\t' + f.getValue()[1]);
+                    out.newLine();
+                }
+                out.write("#total\t" + totals[0] + '\t' + totals[1] + '\t' + totals[2] + '\t' + totals[3]);
+                out.newLine();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /** Только заголовок: корни плана нужны до старта конвейера. */
+    public static Header header(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return readHeader(in, file);
+        }
+    }
+
+    /** Приёмник строк плана со смещениями: offset — начало строки, next — начало следующей. */
+    interface Sink {
+        boolean accept(Entry e, long offset, long next);
+    }
+
+    /**
+     * Читает строки плана по порядку и отдаёт их в sink; false из sink — остановиться.
+     * Итоговые строки (#folder, #total) пропускаются: их пересчитает сам прогон.
+     */
+    static void read(Path file, Predicate<Entry> sink) throws IOException {
+        read(file, 0, (e, offset, next) -> sink.test(e));
+    }
+
+    /**
+     * То же с произвольного места: from — смещение начала строки (0 — с начала файла).
+     * Возобновлённая задача читает только свой остаток, а не весь план.
+     */
+    static void read(Path file, long from, Sink sink) throws IOException {
+        Header h = header(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ch.position(from);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(ch), 1 << 16);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long at = from;
+            while (true) {
+                int b = in.read();
+                if (b != -1 && b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                if (b == -1 && line.size() == 0) return;
+                long next = at + line.size() + (b == -1 ? 0 : 1);
+                String s = line.toString(StandardCharsets.UTF_8);
+                line.reset();
+                if (s.endsWith("\r")) s = s.substring(0, s.length() - 1);
+                if (!s.isEmpty() && s.charAt(0) != '#' && !sink.accept(parse(s, h, file, at), at, next)) return;
+                at = next;
+                if (b == -1) return;
+            }
+        }
+    }
+
+    private static Entry parse(String line, Header h, Path file, long offset) throws IOException {
+        String[] f = line.split("\t", -1);
+        if (f.length != 6) throw new IOException(file + " @" + offset + ": bad plan line");
+        try {
+            return new Entry(Status.valueOf(f[0]), Long.parseLong(f[1]),
+                    "-".equals(f[2]) ? null : LocalDate.parse(f[2]),
+                    h.source().resolve(unescape(f[4])),
+                    "-".equals(f[5]) ? null : h.dest().resolve(unescape(f[5])));
+        } catch (RuntimeException ex) {
+            throw new IOException(file + " @" + offset + ": " + ex.getMessage());
+        }
+    }
+
+    private static Header readHeader(BufferedReader in, Path file) throws IOException {
+        if (!MAGIC.equals(in.readLine())) throw new IOException(file + ": not a SortIt plan");
+        String[] v = new String[4];
+        String[] keys = {"#source\t", "#dest\t", "#template\t", "#dateSource\t"};
+        for (int i = 0; i < keys.length; i++) {
+            String line = in.readLine();
+            if (line == null || !line.startsWith(keys[i])) throw new IOException(file + ": bad plan header");
+            v[i] = unescape(line.substring(keys[i].length()));
+        }
+        try {
+            return new Header(Path.of(v[0]), Path.of(v[1]), v[2], DateSource.valueOf(v[3]));
+        } catch (RuntimeException e) {
+            throw new IOException(file + ": bad plan header: " + e.getMessage());
+        }
+    }
+
+    private static String relative(Path root, Path p) {
+        p = p.toAbsolutePath();
+        return slashes(p.startsWith(root) ? root.relativize(p).toString() : p.toString());
+    }
+
+    /** На Windows пишем '/' вместо обратной косой: Path.of его понимает, а экранировать не придётся. */
+    private static String slashes(String path) {
+        return File.separatorChar == '/' ? path : path.replace(File.separatorChar, '/');
+    }
+
+    static String escape(String s) {
+        if (s.indexOf('\t') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0 && s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\\' -> sb.append("\\\\");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == s.length()) { sb.append(c); continue; }
+            char n = s.charAt(++i);
+            sb.append(switch (n) {
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                default -> n;
+            });
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.pavelkuzmin.sortit.engine;
+
+/**
+ * Скорость и оставшееся время прогона по живым счётчикам SortStats. Показания снимает
+ * тот, кто их показывает (таймер UI, строка прогресса CLI), — движок ничего не
+ * рассылает и от частоты опроса не зависит.
+ * Скорость сглаживается экспоненциально (постоянная времени TAU_SECONDS), чтобы ETA не
+ * прыгало от файла к файлу; до первых показаний берётся средняя с начала прогона.
+ */
+public final class ProgressMeter {
+
+    private static final double TAU_SECONDS = 5.0;
+
+    private final SortStats stats;
+    private final int expectedTotal;
+
+    private long lastNanos;
+    private int lastFiles;
+    private long lastBytes;
+    private double filesRate = -1;   // файлов/с, сглаженная; -1 — ещё не измеряли
+    private double bytesRate = -1;
+
+    /** expectedTotal — сколько файлов нашло предварительное сканирование (0 — неизвестно). */
+    public ProgressMeter(SortStats stats, int expectedTotal) {
+        this.stats = stats;
+        this.expectedTotal = expectedTotal;
+    }
+
+    /** Снять показания; вызывать периодически из одного потока. */
+    public void sample() {
+        long now = System.nanoTime();
+        int files = stats.completed.get();
+        long bytes = stats.bytesCopied.get();
+        if (lastNanos == 0) {
+            double sec = stats.elapsedSeconds();
+            if (sec > 0) {
+                filesRate = files / sec;
+                bytesRate = bytes / sec;
+            }
+        } else {
+            double dt = (now - lastNanos) / 1e9;
+            if (dt <= 0) return;
+            double a = 1 - Math.exp(-dt / TAU_SECONDS);
+            filesRate = smooth(filesRate, (files - lastFiles) / dt, a);
+            bytesRate = smooth(bytesRate, (bytes - lastBytes) / dt, a);
+        }
+        lastNanos = now;
+        lastFiles = files;
+        lastBytes = bytes;
+    }
+
+    private static double smooth(double prev, double cur, double a) {
+        return prev < 0 ? cur : prev + a * (cur - prev);
+    }
+
+    public double filesPerSecond() {
+        return Math.max(0, filesRate);
+    }
+
+    /** Запись на диск (копирование, перенос между томами), байт/с. */
+    public double bytesPerSecond() {
+        return Math.max(0, bytesRate);
+    }
+
+    /** Всего файлов: пока листинг идёт — не меньше, чем нашло сканирование. */
+    public int total() {
+        int listed = stats.listed.get();
+        return stats.listingDone ? listed : Math.max(listed, expectedTotal);
+    }
+
+    public int percent() {
+        return stats.percent(expectedTotal);
+    }
+
+    /** Оставшееся время, сек; -1 — пока не оценить (нет скорости). */
+    public long etaSeconds() {
+        int left = total() - stats.completed.get();
+        if (left <= 0) return 0;
+        if (filesRate <= 0) return -1;
+        return (long) Math.ceil(left / filesRate);
+    }
+
+    /** ч:мм:сс или м:сс; неизвестно — "—". */
+    public static String formatDuration(long seconds) {
+        if (seconds < 0) return "—";
+        long h = seconds / 3600, m = seconds / 60 % 60, s = seconds % 60;
+        return h > 0 ? String.format("%d:%02d:%02d", h, m, s) : String.format("%d:%02d", m, s);
+    }
+}
@@ -0,0 +1,191 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pavelkuzmin.sortit.i18n.Strings;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Журнал прогона: JSON Lines, одна запись на файл (итог, источник даты, цель, байты,
+ * длительность), пишется по ходу прогона. Рабочие потоки только кладут запись в
+ * ограниченную очередь (полна — ждут, память не растёт), в файл пишет отдельный поток;
+ * буфер сбрасывается, как только очередь опустела на FLUSH_MS. После падения теряется
+ * не больше последнего буфера, а не весь лог.
+ * Ошибки хранятся как ключ сообщения + аргументы: текст на языке интерфейса
+ * собирается только при показе (render()).
+ */
+public class RunJournal implements Closeable {
+
+    public enum Outcome { COPIED, MOVED, SOURCE_KEPT, RENAMED, LINKED, DUPLICATE, ARCHIVED, RESUMED, FAILED, ERROR }
+
+    /**
+     * Запись журнала. FAILED — файл не перенесён (key/args — сообщение), ERROR — ошибка
+     * прогона, не относящаяся к одному файлу. SOURCE_KEPT — перенос на другой том: копия
+     * на месте, но исходник удалить не удалось (key/args — почему), файл теперь в двух местах.
+     * Пустые поля в файл не пишутся.
+     */
+    public record Entry(Outcome outcome, String source, String target, String dateSource, String date,
+                        long bytes, long micros, String key, List<String> args) {
+
+        public boolean failed() {
+            return outcome == Outcome.FAILED || outcome == Outcome.ERROR;
+        }
+
+        /** Стоит показать пользователю: ошибка или исходник, оставшийся после переноса. */
+        public boolean notable() {
+            return failed() || outcome == Outcome.SOURCE_KEPT;
+        }
+
+        /** Текст сообщения на текущем языке. */
+        public String render() {
+            List<String> a = args == null ? List.of() : args;
+            if (key == null) return String.join(" ", a);
+            return MessageFormat.format(Strings.get(key), a.toArray());
+        }
+    }
+
+    private static final int CAPACITY = 8192;
+    private static final long FLUSH_MS = 200;
+    private static final Entry END = new Entry(Outcome.ERROR, null, null, null, null, 0, 0, null, null);
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ObjectReader READER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .readerFor(Entry.class);
+
+    private final Path file;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final JsonGenerator out;
+    private final Thread writer;
+    private volatile IOException failure;
+
+    private RunJournal(Path file) throws IOException {
+        this.file = file;
+        BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.out = JSON.createGenerator(w).setRootValueSeparator(null); // разделитель — '\n' в write()
+        this.writer = new Thread(this::writeLoop, "sortit-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static RunJournal open(Path file) throws IOException {
+        return new RunJournal(file);
+    }
+
+    /** Имя по умолчанию — рядом с логами прогонов: sortit-ггггММдд-ЧЧммсс.jsonl. */
+    public static String defaultName() {
+        return "sortit-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jsonl";
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /** Положить запись; при полной очереди ждёт писателя. Если писать не удалось — запись теряется. */
+    public void record(Entry e) {
+        if (failure != null) return;
+        try {
+            while (!queue.offer(e, 100, TimeUnit.MILLISECONDS)) {
+                if (failure != null || !writer.isAlive()) return;
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            boolean dirty = false;
+            while (true) {
+                Entry e = queue.poll(FLUSH_MS, TimeUnit.MILLISECONDS);
+                if (e == null) {
+                    if (dirty) { out.flush(); dirty = false; }
+                    continue;
+                }
+                if (e == END) break;
+                write(e);
+                dirty = true;
+            }
+            out.flush();
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException ignored) {
+            // закрытие
+        } finally {
+            try { out.close(); } catch (IOException e) { if (failure == null) failure = e; }
+        }
+    }
+
+    private void write(Entry e) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("outcome", e.outcome().name());
+        if (e.source() != null) out.writeStringField("source", e.source());
+        if (e.target() != null) out.writeStringField("target", e.target());
+        if (e.dateSource() != null) out.writeStringField("dateSource", e.dateSource());
+        if (e.date() != null) out.writeStringField("date", e.date());
+        if (e.bytes() != 0) out.writeNumberField("bytes", e.bytes());
+        if (e.micros() != 0) out.writeNumberField("micros", e.micros());
+        if (e.key() != null) out.writeStringField("key", e.key());
+        if (e.args() != null && !e.args().isEmpty()) {
+            out.writeArrayFieldStart("args");
+            for (String a : e.args()) out.writeString(a);
+            out.writeEndArray();
+        }
+        out.writeEndObject();
+        out.writeRaw('\n');
+    }
+
+    /** Дописать очередь и закрыть файл. Ошибка записи (если была) пробрасывается здесь. */
+    @Override
+    public void close() throws IOException {
+        try {
+            // как в record(): писатель мог упасть при полной очереди — тогда END не дождётся места
+            while (writer.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                if (failure != null) break;
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** Одна строка журнала (просмотр показывает записи по одной, не читая файл). */
+    public static Entry parse(String line) throws IOException {
+        return READER.readValue(line);
+    }
+
+    /**
+     * Читает журнал по записи (в памяти — одна запись); false из sink — остановиться.
+     * Оборванная последняя строка (падение во время записи) пропускается.
+     */
+    public static void read(Path file, Predicate<Entry> sink) throws IOException {
+        try (MappingIterator<Entry> it = READER.readValues(file.toFile())) {
+            while (it.hasNextValue()) {
+                if (!sink.test(it.nextValue())) return;
+            }
+        } catch (JsonProcessingException truncated) {
+            // хвост недописан — всё, что до него, уже отдано
+        }
+    }
+}
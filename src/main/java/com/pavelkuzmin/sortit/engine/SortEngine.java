@@ -0,0 +1,878 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.DateSource;
+import com.pavelkuzmin.sortit.config.TransferMode;
+import com.pavelkuzmin.sortit.core.FolderTemplate;
+import com.pavelkuzmin.sortit.core.MediaDateExtractor;
+import com.pavelkuzmin.sortit.core.NameGlob;
+import com.pavelkuzmin.sortit.core.SourceWalker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Фоновый конвейер сортировки:
+ *   листинг папки → определение даты (пул потоков) → создание папки и перенос/копирование/ссылка.
+ * Стадии связаны ограниченными очередями: если диск не успевает, листинг и разбор
+ * метаданных ждут (backpressure), а не копят в памяти весь список.
+ * Перенос в пределах тома — параллельные rename, между томами — копия, fsync, удаление исходника.
+ * Пауза срабатывает между файлами, отмена — и внутри большого файла. Копия (FileCopier)
+ * пишется во временный *.sortit-part и переименовывается в целевое имя только целиком.
+ * Папки назначения создаются по разу на папку (DestDirs), по желанию — все сразу до начала переноса.
+ * Режим плана (planOutput): листинг и даты как обычно, но вместо переноса — строка в PlanFile;
+ * выполнение плана (planInput): листинг и даты заменяет чтение файла плана.
+ * Наблюдение (watch): вместо листинга — FolderWatcher, новые файлы идут порциями тем же путём.
+ * Итог по каждому файлу (и ошибки) пишется по ходу в RunJournal, а не копится в памяти.
+ */
+public class SortEngine {
+
+    /** Вызывается из потока движка по завершении (в т.ч. после отмены). journal — null, если его не удалось открыть. */
+    public interface Listener {
+        void onFinished(SortStats stats, Path journal);
+    }
+
+    static final String PART_SUFFIX = ".sortit-part";
+
+    /** Файл с уже вычисленной папкой назначения. */
+    private record Planned(Path source, Path targetDir, LocalDate date, long mark) {}
+
+    // Маркеры конца потока данных
+    private static final Path END_OF_LIST = Path.of("");
+    private static final Planned END_OF_PLAN = new Planned(END_OF_LIST, END_OF_LIST, null, -1);
+
+    private final SortJob job;
+    private final Listener listener;
+    private final SortStats stats = new SortStats();
+    private RunJournal journal;
+
+    private DateCache cache;
+    private ArchiveIndex index;
+    private FolderTemplate folders;
+    private final DestDirs destDirs = new DestDirs(stats.metrics);
+    /** Итог последнего файла этого потока (пишет record()) — для замера переноса целиком. */
+    private final ThreadLocal<Done> lastDone = new ThreadLocal<>();
+
+    private record Done(RunJournal.Outcome outcome, Path target, long bytes) {}
+    private boolean linkable;
+    private FileStore destStore;   // том назначения; null — определить не удалось
+    private final ConcurrentHashMap<Path, Boolean> sameStoreByDir = new ConcurrentHashMap<>();
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet(); // цели, которые сейчас пишутся
+    private ExecutorService hashPool;  // второй файл пары при сравнении содержимого
+    private PlanFile.Writer plan;      // режим плана: сюда вместо переноса
+    private JobManifest manifest;      // возобновляемая задача: отметки о готовых строках плана
+    private boolean manifestPhase;     // сейчас пишется манифест (фаза 1 возобновляемой задачи)
+    private boolean recovering;        // перезапуск: сверять каждую строку с тем, что уже на диске
+    private long resumeFrom;           // смещение в манифесте, с которого продолжать
+
+    private final Object pauseLock = new Object();
+    private volatile boolean paused;
+    private volatile boolean cancelled;
+    private volatile boolean watchStopped;
+
+    public SortEngine(SortJob job, Listener listener) {
+        this.job = job;
+        this.listener = listener;
+    }
+
+    /** Запуск в отдельном потоке; результат придёт в Listener. */
+    public void start() {
+        Thread t = new Thread(this::run, "sortit-engine");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public SortStats getStats() { return stats; }
+    public boolean isPaused() { return paused; }
+
+    public void pause() { paused = true; }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    /** Наблюдение: больше не брать новые файлы, дообработать очередь и завершиться. */
+    public void stopWatching() {
+        watchStopped = true;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        stats.cancelled = true;
+        resume();
+    }
+
+    /** Блокирующий прогон в текущем потоке. */
+    public void run() {
+        Path journalFile = Path.of(job.journalFile.isBlank() ? RunJournal.defaultName() : job.journalFile);
+        try {
+            journal = RunJournal.open(journalFile);
+        } catch (IOException e) {
+            stats.journalFailure = journalFile + ": " + e.getMessage(); // прогон идёт, итоги — только в счётчиках
+        }
+        try {
+            if (job.resumable && !job.watch && job.planOutput.isBlank() && job.planInput.isBlank()) {
+                runResumable();
+            } else {
+                pipeline();
+            }
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Возобновляемая задача: 1) если в назначении нет незавершённой задачи — план в манифест
+     * (листинг и даты как в режиме плана) и fsync; 2) выполнение манифеста с отметками.
+     * Если задача уже есть — сразу шаг 2 с места остановки, текущие источник и шаблон не важны.
+     */
+    private void runResumable() {
+        JobManifest m = JobManifest.at(Path.of(job.destDir));
+        try {
+            if (m.exists()) {
+                m.restoreSettings(job);
+                recovering = true;
+                stats.resumedJob = true;
+            } else {
+                m.create(job);
+                job.planOutput = m.planDraft().toString();
+                manifestPhase = true;
+                pipeline();
+                manifestPhase = false;
+                job.planOutput = "";
+                plan = null;
+                if (cancelled || stats.errors.get() > 0 && !Files.isRegularFile(m.planDraft())) return;
+                m.commitPlan();
+                stats.resetCounters();
+            }
+            job.planInput = m.plan().toString();
+            resumeFrom = m.resume();
+        } catch (IOException e) {
+            error("Job: " + e.getMessage());
+            return;
+        }
+        manifest = m;
+        pipeline();
+        try {
+            if (cancelled || stats.cancelled) m.close();
+            else m.finish();   // всё выполнено — манифест больше не нужен
+        } catch (IOException e) {
+            error("Job: " + e.getMessage());
+        }
+    }
+
+    /** Один проход конвейера: листинг/план → даты → перенос (или запись плана). */
+    private void pipeline() {
+        boolean replay = !job.planInput.isBlank();
+        if (replay) {
+            // корни, шаблон и источник даты — те, с которыми план строился
+            try {
+                PlanFile.Header h = PlanFile.header(Path.of(job.planInput));
+                job.sourceDir = h.source().toString();
+                job.destDir = h.dest().toString();
+                job.destTemplate = h.template();
+                job.dateSource = h.dateSource();
+            } catch (IOException e) {
+                error("Plan: " + e.getMessage());
+                stats.listingDone = true;
+                return;
+            }
+        }
+        boolean planning = !replay && !job.planOutput.isBlank();
+
+        BlockingQueue<Path> listQ = new ArrayBlockingQueue<>(job.queueCapacity);
+        BlockingQueue<Planned> planQ = new ArrayBlockingQueue<>(job.queueCapacity);
+        stats.queues(listQ, planQ);
+        NameGlob glob = NameGlob.compile(job.filenameTemplate);
+        folders = FolderTemplate.compile(job.destTemplate).under(Path.of(job.destDir));
+        destStore = storeOf(Path.of(job.destDir));
+        linkable = job.mode == TransferMode.LINK && destStore != null && !isFat(destStore);
+        // перемещение в пределах тома — это rename, их можно делать параллельно
+        int lanes = job.mode == TransferMode.MOVE && sameStore(Path.of(job.sourceDir))
+                ? Math.max(job.transferThreads, job.renameThreads) : job.transferThreads;
+        long reads0 = MediaDateExtractor.metadataReads();
+        if (stats.startedNanos == 0) stats.startedNanos = System.nanoTime();
+        // дата из имени — чистая функция имени: кэш добавил бы только stat и запись на файл
+        if (job.useDateCache && job.dateSource != DateSource.FILENAME) {
+            try {
+                cache = DateCache.open(Path.of(DateCache.FILE_NAME), job.dateCacheMaxEntries);
+            } catch (IOException e) {
+                cache = null; // занят другим экземпляром (окно и --watch) — без кэша
+            }
+        }
+        if (planning) {
+            try {
+                plan = new PlanFile.Writer(Path.of(job.planOutput), new PlanFile.Header(
+                        Path.of(job.sourceDir).toAbsolutePath(), Path.of(job.destDir).toAbsolutePath(),
+                        job.destTemplate, job.dateSource));
+                folders = FolderTemplate.compile(job.destTemplate).under(Path.of(job.destDir).toAbsolutePath());
+            } catch (IOException e) {
+                error("Plan: " + e.getMessage());
+                cancel();
+            }
+        } else if (job.useArchiveIndex) {
+            try {
+                index = ArchiveIndex.open(Path.of(job.destDir));
+            } catch (IOException e) {
+                error("Archive index: " + e.getMessage()); // без индекса работаем как раньше
+            }
+        }
+
+        ExecutorService datePool = Executors.newFixedThreadPool(job.dateThreads, named("sortit-date"));
+        ExecutorService transferPool = Executors.newFixedThreadPool(lanes, named("sortit-transfer"));
+        hashPool = job.resolveDuplicates || recovering ? Executors.newFixedThreadPool(lanes, named("sortit-hash")) : null;
+        try {
+            List<Future<?>> transfers = new ArrayList<>();
+            // с предсозданием папок план копится целиком, и перенос стартует только после mkdir'ов
+            boolean watching = job.watch && !planning && !replay;
+            // с наблюдением листинг не кончается, поэтому папки создаются по ходу
+            List<Planned> held = job.precreateDirs && !planning && !watching ? Collections.synchronizedList(new ArrayList<>()) : null;
+            if (held == null && !planning) {
+                for (int i = 0; i < lanes; i++) transfers.add(transferPool.submit(() -> transferLoop(planQ)));
+            }
+            Predicate<Planned> out = planning ? this::planned : held == null ? t -> put(planQ, t) : held::add;
+
+            if (replay) {
+                replayLoop(out);
+            } else {
+                List<Future<?>> daters = new ArrayList<>();
+                for (int i = 0; i < job.dateThreads; i++) daters.add(datePool.submit(() -> dateLoop(listQ, out)));
+                if (watching) watchLoop(listQ, glob);
+                else listLoop(listQ, glob);
+                awaitAll(daters);
+            }
+
+            if (held != null && !cancelled) {
+                Set<Path> dirs = new HashSet<>();
+                for (Planned t : held) dirs.add(t.targetDir());
+                destDirs.precreate(dirs, job.mkdirThreads);
+                for (int i = 0; i < lanes; i++) transfers.add(transferPool.submit(() -> transferLoop(planQ)));
+                for (Planned t : held) if (!put(planQ, t)) break;
+            }
+            put(planQ, END_OF_PLAN);
+            awaitAll(transfers);
+        } catch (Exception e) {
+            error("Internal error: " + e.getMessage());
+        } finally {
+            datePool.shutdownNow();
+            transferPool.shutdownNow();
+            if (hashPool != null) hashPool.shutdownNow();
+            stats.metadataReads += MediaDateExtractor.metadataReads() - reads0;
+            stats.mkdirs = destDirs.mkdirs();
+            stats.finishedNanos = System.nanoTime();
+            if (plan != null) {
+                try {
+                    plan.close();
+                } catch (IOException e) {
+                    error("Plan: " + e.getMessage());
+                }
+                stats.planFolders = plan.folders();
+            }
+            if (index != null) {
+                try { index.close(); } catch (IOException ignored) {}
+                stats.archived = index.hits.get();
+            }
+            if (cache != null) {
+                cache.close();
+                stats.cacheHits += cache.hits.get();
+                stats.cacheMisses += cache.misses.get();
+            }
+        }
+    }
+
+    private void finish() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                stats.journalFailure = journal.file() + ": " + e.getMessage();
+            }
+        }
+        if (listener != null) listener.onFinished(stats, journal == null ? null : journal.file());
+    }
+
+    // ===== стадия 1: листинг =====
+    private void listLoop(BlockingQueue<Path> out, NameGlob glob) {
+        job.walk.dirListener = this::dirListed;
+        job.walk.skipDir = Path.of(job.destDir);   // могло смениться при продолжении прерванного задания
+        SourceWalker walker = new SourceWalker(Path.of(job.sourceDir), glob::matches, job.walk);
+        try {
+            // файлы уходят в очередь по мере обхода; полный список не строим
+            walker.walk(p -> {
+                if (!checkpoint()) return false;
+                stats.listed.incrementAndGet();
+                return put(out, p);
+            }, () -> cancelled);
+        } catch (IOException | DirectoryIteratorException e) {
+            error("Internal error: " + e.getMessage());
+        } finally {
+            stats.listingDone = true;
+            put(out, END_OF_LIST);
+        }
+    }
+
+    private void dirListed(Path dir, int files, long nanos) {
+        stats.metrics.stage("list").recordNanos(nanos);
+        SortEvents.ListDirectory ev = new SortEvents.ListDirectory();
+        if (ev.shouldCommit()) {
+            ev.directory = dir.toString();
+            ev.files = files;
+            ev.listNanos = nanos;
+            ev.commit();
+        }
+    }
+
+    /**
+     * Стадия 1 в режиме наблюдения: сперва то, что уже лежит в папке, затем только новое.
+     * Каждый такт — одна порция успокоившихся файлов; до stopWatching() или отмены.
+     */
+    private void watchLoop(BlockingQueue<Path> out, NameGlob glob) {
+        Path root = Path.of(job.sourceDir);
+        job.walk.skipDir = Path.of(job.destDir);
+        SourceWalker walker = new SourceWalker(root, glob::matches, job.walk);
+        try (FolderWatcher w = new FolderWatcher(root, walker, Path.of(job.destDir), job.watchSettleMillis)) {
+            while (!watchStopped && checkpoint()) {
+                List<Path> batch = w.poll();
+                if (!batch.isEmpty()) stats.batches.incrementAndGet();
+                for (Path p : batch) {
+                    stats.listed.incrementAndGet();
+                    if (!put(out, p)) break;
+                }
+                stats.watchEvents = w.events;
+                stats.pending = w.pending();
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            error("Internal error: " + e.getMessage());
+        } catch (InterruptedException ignored) {
+            // отмена
+        } finally {
+            stats.pending = 0;
+            stats.listingDone = true;
+            put(out, END_OF_LIST);
+        }
+    }
+
+    // ===== стадия 2: дата и папка назначения =====
+    private void dateLoop(BlockingQueue<Path> in, Predicate<Planned> out) {
+        while (true) {
+            Path p = take(in);
+            if (p == null) return;
+            if (p == END_OF_LIST) { put(in, END_OF_LIST); return; } // отдаём маркер соседям
+            if (!checkpoint()) return;
+
+            String name = p.getFileName().toString();
+            Optional<LocalDate> date;
+            try {
+                date = DateResolver.resolve(p, job.dateSource, cache, stats.metrics);
+            } catch (Exception ex) {
+                date = Optional.empty();
+            }
+            if (date.isEmpty()) {
+                if (plan != null && !planRow(PlanFile.Status.NODATE, p, null, null)) return;
+                if (manifestPhase) continue; // ошибку покажет выполнение манифеста
+                fail(p, 0, DateResolver.errorKey(job.dateSource), name);
+                continue;
+            }
+            stats.dated.incrementAndGet();
+
+            Path targetDir = folders.folder(date.get());
+            if (!out.test(new Planned(p, targetDir, date.get(), -1))) return;
+        }
+    }
+
+    // ===== план: вместо переноса =====
+
+    /** Куда файл лёг бы; проверка занятости имени — только чтение. */
+    private boolean planned(Planned t) {
+        Path target = t.targetDir().resolve(t.source().getFileName().toString());
+        boolean taken = Files.exists(target, LinkOption.NOFOLLOW_LINKS);
+        return planRow(taken ? PlanFile.Status.EXISTS : PlanFile.Status.OK, t.source(), t.date(), target);
+    }
+
+    private boolean planRow(PlanFile.Status status, Path src, LocalDate date, Path target) {
+        long bytes;
+        try {
+            bytes = Files.size(src);
+        } catch (IOException e) {
+            bytes = 0;
+        }
+        try {
+            status = plan.add(new PlanFile.Entry(status, bytes, date, src, target));
+        } catch (IOException e) {
+            error("Plan: " + e.getMessage());
+            cancel();
+            return false;
+        }
+        if (target == null || manifestPhase) return true; // ошибку «нет даты» учтёт вызывающий
+        if (status != PlanFile.Status.OK) stats.conflicts.incrementAndGet();
+        stats.ok.incrementAndGet();
+        stats.bytes.addAndGet(bytes);
+        stats.completed.incrementAndGet();
+        return true;
+    }
+
+    /** Выполнение плана: строки файла вместо листинга и разбора дат. */
+    private void replayLoop(Predicate<Planned> out) {
+        JobManifest m = manifest;
+        try {
+            PlanFile.read(Path.of(job.planInput), m == null ? 0 : resumeFrom, (e, offset, next) -> {
+                if (!checkpoint()) return false;
+                if (m != null && m.isDone(offset)) {
+                    m.skipped(next);
+                    stats.resumedDone.incrementAndGet();
+                    return true;
+                }
+                if (m != null) m.reading(offset, next);
+                stats.listed.incrementAndGet();
+                if (e.target() == null) {
+                    fail(e.source(), 0, DateResolver.errorKey(job.dateSource), e.source().getFileName().toString());
+                    if (m != null) m.committed(offset);
+                    return true;
+                }
+                stats.dated.incrementAndGet();
+                return out.test(new Planned(e.source(), e.target().getParent(), e.date(), offset));
+            });
+        } catch (IOException e) {
+            error("Plan: " + e.getMessage());
+        } finally {
+            stats.listingDone = true;
+        }
+    }
+
+    // ===== стадия 3: перенос =====
+    private void transferLoop(BlockingQueue<Planned> in) {
+        while (true) {
+            Planned t = take(in);
+            if (t == null) return;
+            if (t == END_OF_PLAN) { put(in, END_OF_PLAN); return; }
+            if (!checkpoint()) return;
+            SortEvents.Transfer ev = new SortEvents.Transfer();
+            ev.begin();
+            long t0 = System.nanoTime();
+            lastDone.remove();
+            if (recovering && recover(t)) {
+                // сделано до перезапуска
+            } else {
+                transfer(t);
+            }
+            transferred(t, ev, t0);
+            // отменённый посреди файла перенос не отмечаем — при перезапуске его досчитает recover()
+            if (manifest != null && t.mark() >= 0 && !cancelled) manifest.committed(t.mark());
+        }
+    }
+
+    /** Замер переноса файла целиком (резерв имени, проверки, копия) — по его итогу. */
+    private void transferred(Planned t, SortEvents.Transfer ev, long t0) {
+        Done d = lastDone.get();
+        if (d == null) return; // отменён посреди файла — итога нет
+        stats.metrics.record("transfer " + d.outcome(), t0);
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.source = t.source().toString();
+            ev.target = d.target() == null ? null : d.target().toString();
+            ev.outcome = d.outcome().name();
+            ev.bytes = d.bytes();
+            ev.commit();
+        }
+    }
+
+    /**
+     * Перезапуск задачи: что с этой строкой успело случиться до падения? Откатывает
+     * недописанное (*.sortit-part) и признаёт сделанным то, что уже
+     * на месте: исходника нет (перенесён) или в цели тот же файл (при переносе исходник
+     * тогда удаляется — прерванный перенос между томами дописывается). true — строка готова.
+     */
+    private boolean recover(Planned t) {
+        Path src = t.source();
+        String name = src.getFileName().toString();
+        try {
+            boolean srcExists = Files.exists(src, LinkOption.NOFOLLOW_LINKS);
+            long srcSize = srcExists ? Files.size(src) : -1;
+            // резерв и копия идут подряд: "имя", "имя (1)", ... — до первого свободного
+            for (int n = 0; ; n++) {
+                Path cand = t.targetDir().resolve(n == 0 ? name : withSuffix(name, n));
+                Files.deleteIfExists(cand.resolveSibling(cand.getFileName() + PART_SUFFIX));
+                if (!Files.exists(cand, LinkOption.NOFOLLOW_LINKS)) break;
+                if (!srcExists) continue;
+                long size = Files.size(cand);
+                if (size == srcSize && sameContent(src, cand)) {
+                    if (job.mode == TransferMode.MOVE) Files.delete(src);
+                    stats.resumedDone.incrementAndGet();
+                    stats.completed.incrementAndGet();
+                    done(RunJournal.Outcome.RESUMED, t, cand, size, 0);
+                    return true;
+                }
+            }
+            if (srcExists) return false;
+            // исходника нет — перенесён до падения (или удалён); переносить нечего
+            stats.resumedDone.incrementAndGet();
+            stats.completed.incrementAndGet();
+            done(RunJournal.Outcome.RESUMED, t, null, 0, 0);
+            return true;
+        } catch (IOException e) {
+            return false; // пусть обычный перенос сообщит об ошибке
+        }
+    }
+
+    private void transfer(Planned t) {
+        long t0 = System.nanoTime();
+        String name = t.source().getFileName().toString();
+        try {
+            destDirs.ensure(t.targetDir());
+        } catch (Exception ex) {
+            fail(t.source(), t0, "error.dest.mkdir", name, t.targetDir(), ex.getMessage());
+            return;
+        }
+
+        // то же содержимое уже есть где-то в архиве (возможно, в другой папке дат) — пропускаем
+        ArchiveIndex.Probe probe = null;
+        if (index != null) {
+            try {
+                probe = index.probe(t.source());
+            } catch (IOException ignored) {
+                // индекс — подсказка; не смогли прочитать — просто переносим
+            }
+            if (probe != null && probe.existing() != null) {
+                stats.completed.incrementAndGet();
+                done(RunJournal.Outcome.ARCHIVED, t, probe.existing(), probe.size(), t0);
+                return;
+            }
+        }
+
+        Path target = claimTarget(t.source(), t.targetDir(), name);
+        if (target == null) return;
+        // имя зарезервировано только в inFlight; на диск файл ставится без замены (publish),
+        // и если имя за это время занял кто-то снаружи — резервируем следующее и повторяем
+        try {
+            long fileSize = Files.size(t.source());
+            long size = fileSize;
+            RunJournal.Outcome outcome = RunJournal.Outcome.COPIED;
+            for (;;) {
+                try {
+                    outcome = place(t, target);
+                    break;
+                } catch (FileAlreadyExistsException taken) {
+                    inFlight.remove(target);
+                    target = claimTarget(t.source(), t.targetDir(), name);
+                    if (target == null) return;
+                }
+            }
+            if (outcome == RunJournal.Outcome.LINKED || outcome == RunJournal.Outcome.RENAMED) size = 0; // байты не переносились
+            String kept = null;
+            if (outcome == RunJournal.Outcome.MOVED) {
+                // копия уже на месте и сброшена на диск; не удалился исходник — это не ошибка
+                // переноса (повтор только наткнулся бы на готовую цель), а отдельный итог
+                try {
+                    Files.delete(t.source());
+                    stats.movedAcross.incrementAndGet();
+                } catch (IOException ex) {
+                    kept = ex.getMessage();
+                    outcome = RunJournal.Outcome.SOURCE_KEPT;
+                    stats.sourceKept.incrementAndGet();
+                }
+            }
+            if (probe != null) {
+                try { index.add(probe, target); } catch (IOException ignored) {}
+            }
+            stats.ok.incrementAndGet();
+            stats.bytes.addAndGet(size);
+            stats.completed.incrementAndGet();
+            if (kept != null) {
+                record(outcome, t.source(), target, t.date(), fileSize, t0, "warn.move.source.kept",
+                        List.of(name, target.toString(), String.valueOf(kept)));
+            } else {
+                done(outcome, t, target, fileSize, t0);
+            }
+        } catch (InterruptedIOException ex) {
+            if (!cancelled) fail(t.source(), t0, "error.transfer", name, target, ex.getMessage());
+        } catch (Exception ex) {
+            fail(t.source(), t0, "error.transfer", name, target, ex.getMessage());
+        } finally {
+            if (target != null) inFlight.remove(target);
+        }
+    }
+
+    /**
+     * Ставит файл под зарезервированное имя в режиме job.mode. Чужой файл не затирается
+     * никогда: занятое имя — FileAlreadyExistsException (вызывающий берёт следующее).
+     */
+    private RunJournal.Outcome place(Planned t, Path target) throws IOException {
+        RunJournal.Outcome outcome = RunJournal.Outcome.COPIED;
+        switch (job.mode) {
+            case COPY -> copyViaPart(t.source(), target, false);
+            case LINK -> {
+                if (link(t.source(), target)) {
+                    outcome = RunJournal.Outcome.LINKED;
+                } else {
+                    copyViaPart(t.source(), target, false);
+                }
+            }
+            case MOVE -> {
+                if (sameStore(t.source().getParent())) {
+                    // rename без REPLACE_EXISTING: занятое имя — FileAlreadyExistsException, а не замена
+                    Files.move(t.source(), target);
+                    stats.renamed.incrementAndGet();
+                    outcome = RunJournal.Outcome.RENAMED;
+                } else {
+                    // другой том: копия с fsync; исходник удаляет вызывающий, когда копия на месте
+                    copyViaPart(t.source(), target, true);
+                    outcome = RunJournal.Outcome.MOVED;
+                }
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Резервирует имя в папке назначения — только в памяти, в таблице inFlight (соседние
+     * потоки этого прогона), так что после сбоя под настоящим именем ничего не остаётся.
+     * От второго экземпляра защищает publish(): он ставит файл без замены, а занятое имя
+     * возвращает сюда же. Без resolveDuplicates занятое имя — ошибка. С ним занятое имя
+     * сравниваем по содержимому: тот же файл — молча пропускаем (при переносе исходник
+     * остаётся на месте), другой — пробуем "имя (1).ext", "имя (2).ext"... без повторного
+     * листинга папки. null — файл дальше не идёт (уже учтён в stats).
+     */
+    private Path claimTarget(Path src, Path dir, String name) {
+        for (int n = 0; ; n++) {
+            Path cand = n == 0 ? dir.resolve(name) : dir.resolve(withSuffix(name, n));
+            boolean claimed = inFlight.add(cand);
+            if (claimed && !Files.exists(cand, LinkOption.NOFOLLOW_LINKS)) {
+                if (n > 0) stats.suffixed.incrementAndGet();
+                return cand;
+            }
+            // занято — ниже решаем, дубль это или нет
+            if (!job.resolveDuplicates) {
+                if (claimed) inFlight.remove(cand);
+                fail(src, 0, "error.dest.exists", name, cand);
+                return null;
+            }
+            if (!claimed) continue; // это имя сейчас пишет соседний поток
+            boolean dup = sameContent(src, cand);
+            inFlight.remove(cand);
+            if (dup) {
+                stats.duplicates.incrementAndGet();
+                stats.completed.incrementAndGet();
+                record(RunJournal.Outcome.DUPLICATE, src, cand, null, sizeOf(src), 0, null, List.of());
+                return null;
+            }
+        }
+    }
+
+    static String withSuffix(String name, int n) {
+        int dot = name.lastIndexOf('.');
+        return dot <= 0 ? name + " (" + n + ")" : name.substring(0, dot) + " (" + n + ")" + name.substring(dot);
+    }
+
+    /**
+     * Одинаковое ли содержимое: размер → хэш начала и конца → побайтное сравнение.
+     * Первые два этапа дёшево отсекают почти всех кандидатов; решает только сравнение
+     * байтов — по совпадению хэша файл пропускается (а при переносе удаляется исходник),
+     * так что коллизия 64-битного хэша не должна стоить данных. Читает оба файла
+     * целиком — столько же, сколько стоил полный хэш. Ошибка чтения — считаем разными.
+     */
+    private boolean sameContent(Path a, Path b) {
+        try {
+            long size = Files.size(a);
+            if (size != Files.size(b)) return false;
+            Future<Long> other = hashPool.submit(() -> ContentHash.partial(b));
+            if (ContentHash.partial(a) != other.get()) return false;
+            stats.fullCompares.incrementAndGet();
+            return Files.mismatch(a, b) == -1;
+        } catch (IOException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Жёсткая ссылка вместо копии, сразу под именем цели (link(2) занятое имя не заменяет).
+     * false — ссылку сделать нельзя (другой том, FAT, лимит ссылок), тогда вызывающий копирует.
+     */
+    private boolean link(Path src, Path target) throws IOException {
+        if (!linkable || !sameStore(src.getParent())) {
+            stats.linkFallbacks.incrementAndGet();
+            return false;
+        }
+        try {
+            Files.createLink(target, src);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            stats.linkFallbacks.incrementAndGet();
+            return false;
+        }
+        stats.linked.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Папка источника на том же томе, что и назначение? Ответ кэшируется по папке:
+     * getFileStore недешёв, а при рекурсивном обходе внутри источника бывают точки монтирования.
+     */
+    private boolean sameStore(Path dir) {
+        if (destStore == null || dir == null) return false;
+        return sameStoreByDir.computeIfAbsent(dir, d -> destStore.equals(storeOf(d)));
+    }
+
+    /** Том пути; если пути ещё нет (папка назначения) — том ближайшего существующего предка. */
+    static FileStore storeOf(Path p) {
+        try {
+            Path d = p.toAbsolutePath();
+            while (d != null && !Files.exists(d)) d = d.getParent();
+            return d == null ? null : Files.getFileStore(d);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** На FAT/exFAT жёстких ссылок нет. */
+    private static boolean isFat(FileStore s) {
+        String type = s.type().toLowerCase(Locale.ROOT);
+        return type.contains("fat") || type.equals("msdos");
+    }
+
+    /**
+     * Копия во временный файл рядом с целью, затем publish: цель либо целая, либо её нет.
+     * durable — сбросить данные на диск до публикации (перед удалением исходника при переносе).
+     */
+    private void copyViaPart(Path src, Path target, boolean durable) throws IOException {
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        try {
+            FileCopier.copy(src, part, stats.bytesCopied::addAndGet, () -> cancelled, durable);
+            publish(part, target);
+            if (durable) FileCopier.syncDir(target.getParent());
+        } catch (IOException e) {
+            try { Files.deleteIfExists(part); } catch (IOException ignored) {}
+            throw e;
+        }
+    }
+
+    /**
+     * Готовый part — под имя цели, не заменяя существующий файл: жёсткая ссылка (link(2)
+     * атомарно отказывает на занятом имени) и удаление part. Где ссылок нет (FAT, часть
+     * сетевых томов) — rename без REPLACE_EXISTING. Занято — FileAlreadyExistsException.
+     */
+    static void publish(Path part, Path target) throws IOException {
+        try {
+            Files.createLink(target, part);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.move(part, target);
+            return;
+        }
+        Files.delete(part);
+    }
+
+    // ===== служебное =====
+
+    /** Ждёт снятия паузы; false — прогон отменён. */
+    private boolean checkpoint() {
+        if (paused) {
+            synchronized (pauseLock) {
+                while (paused && !cancelled) {
+                    try { pauseLock.wait(); } catch (InterruptedException e) { return false; }
+                }
+            }
+        }
+        return !cancelled;
+    }
+
+    private <T> boolean put(BlockingQueue<T> q, T item) {
+        try {
+            while (!q.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled) return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private <T> T take(BlockingQueue<T> q) {
+        try {
+            T item;
+            while ((item = q.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (cancelled) return null;
+            }
+            return item;
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> fs) throws InterruptedException, ExecutionException {
+        for (Future<?> f : fs) f.get();
+    }
+
+    /** Файл не перенесён: счётчики + запись в журнал (ключ сообщения, текст — при показе). t0 = 0 — без длительности. */
+    private void fail(Path src, long t0, String key, Object... args) {
+        stats.errors.incrementAndGet();
+        stats.completed.incrementAndGet();
+        List<String> a = new ArrayList<>(args.length);
+        for (Object o : args) a.add(String.valueOf(o));
+        record(RunJournal.Outcome.FAILED, src, null, null, sizeOf(src), t0, key, a);
+    }
+
+    /** Ошибка прогона в целом (не конкретного файла). */
+    private void error(String message) {
+        stats.errors.incrementAndGet();
+        record(RunJournal.Outcome.ERROR, null, null, null, 0, 0, null, List.of(message));
+    }
+
+    private void done(RunJournal.Outcome outcome, Planned t, Path target, long bytes, long t0) {
+        record(outcome, t.source(), target, t.date(), bytes, t0, null, List.of());
+    }
+
+    private void record(RunJournal.Outcome outcome, Path src, Path target, LocalDate date,
+                        long bytes, long t0, String key, List<String> args) {
+        switch (outcome) {
+            case COPIED, LINKED, SOURCE_KEPT -> stats.copiedBytes.addAndGet(bytes);
+            case MOVED, RENAMED -> stats.movedBytes.addAndGet(bytes);
+            case DUPLICATE, ARCHIVED, RESUMED -> stats.skippedBytes.addAndGet(bytes);
+            case FAILED -> stats.failedBytes.addAndGet(bytes);
+            default -> { }
+        }
+        if (src != null) lastDone.set(new Done(outcome, target, bytes));
+        if (journal == null) return;
+        journal.record(new RunJournal.Entry(outcome,
+                src == null ? null : src.toString(),
+                target == null ? null : target.toString(),
+                src == null ? null : job.dateSource.name(),
+                date == null ? null : date.toString(),
+                bytes, t0 == 0 ? 0 : (System.nanoTime() - t0) / 1000, key, args));
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return p == null ? 0 : Files.size(p);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
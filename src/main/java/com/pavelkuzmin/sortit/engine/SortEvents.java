@@ -0,0 +1,57 @@
+package com.pavelkuzmin.sortit.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * События Java Flight Recorder по стадиям конвейера — для профилирования боевых прогонов
+ * обычными средствами: java -XX:StartFlightRecording=filename=sortit.jfr -jar sortit.jar ...,
+ * затем jfr print --events com.pavelkuzmin.sortit.* sortit.jfr или JDK Mission Control.
+ * Пока запись не включена, событие стоит одной проверки (shouldCommit()).
+ */
+final class SortEvents {
+    private SortEvents() {}
+
+    @Name("com.pavelkuzmin.sortit.ListDirectory")
+    @Label("List Directory")
+    @Category({"SortIt", "Listing"})
+    @Description("Папка источника прочитана; время чтения — без ожидания очереди (поэтому отдельным полем)")
+    static final class ListDirectory extends Event {
+        @Label("Directory") String directory;
+        @Label("Files") int files;
+        @Label("List Time") @Timespan(Timespan.NANOSECONDS) long listNanos;
+    }
+
+    @Name("com.pavelkuzmin.sortit.DateExtraction")
+    @Label("Date Extraction")
+    @Category({"SortIt", "Dates"})
+    static final class DateExtraction extends Event {
+        @Label("File") String file;
+        @Label("Date Source") String dateSource;
+        @Label("File Type") String fileType;
+        @Label("From Cache") boolean cached;
+        @Label("Found") boolean found;
+    }
+
+    @Name("com.pavelkuzmin.sortit.CreateDirectories")
+    @Label("Create Directories")
+    @Category({"SortIt", "Transfer"})
+    static final class CreateDirectories extends Event {
+        @Label("Directory") String directory;
+    }
+
+    @Name("com.pavelkuzmin.sortit.Transfer")
+    @Label("Transfer")
+    @Category({"SortIt", "Transfer"})
+    static final class Transfer extends Event {
+        @Label("Source") String source;
+        @Label("Target") String target;
+        @Label("Outcome") String outcome;
+        @Label("Size") @DataAmount long bytes;
+    }
+}
@@ -0,0 +1,77 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.AppConfig;
+import com.pavelkuzmin.sortit.config.DateSource;
+import com.pavelkuzmin.sortit.config.TransferMode;
+import com.pavelkuzmin.sortit.core.SourceWalker;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/** Параметры одного прогона сортировки (снимок настроек на момент запуска). */
+public class SortJob {
+    // Источник
+    public String sourceDir = "";
+    public String filenameTemplate = "*.*";
+    public DateSource dateSource = DateSource.METADATA;
+    public TransferMode mode = TransferMode.COPY;
+    public SourceWalker.Options walk = new SourceWalker.Options();
+
+    // Назначение
+    public String destDir = "";
+    public String destTemplate = "YYYYMMDD";
+    public boolean precreateDirs = false; // создать все папки одним параллельным шагом до переноса
+    public int mkdirThreads = 8;          // потоков для этого шага (сетевые диски любят параллельность)
+    public boolean useArchiveIndex = false;   // .sortit-index в корне назначения: не класть уже архивированное
+    public boolean resumable = false;         // манифест .sortit-job: после сбоя продолжить с места остановки
+    public boolean resolveDuplicates = false; // занятое имя: сравнить содержимое, дубль пропустить, иначе "имя (N)"
+
+    // Наблюдение за источником
+    public boolean watch = false;          // не завершаться: сортировать новые файлы по мере появления
+    public long watchSettleMillis = 2000;  // файл считается дописанным, если столько не менялся
+
+    // План
+    public String planOutput = "";  // не пусто: только построить план в этот файл, ничего не трогая
+    public String planInput = "";   // не пусто: выполнить ранее построенный план (даты не вычисляются)
+
+    // Журнал прогона (JSON Lines); пусто — sortit-<время>.jsonl в текущей папке
+    public String journalFile = "";
+
+    // Кэш дат
+    public boolean useDateCache = true;
+    public int dateCacheMaxEntries = 1_000_000;
+
+    // Параллелизм
+    public int dateThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public int transferThreads = 2;   // имена резервируются атомарно, так что писателей может быть несколько
+    public int renameThreads = 4;     // перенос в пределах тома: rename дешёвые, их можно параллелить
+    public int queueCapacity = 1024;  // ёмкость очередей между стадиями (backpressure)
+
+    public static SortJob fromConfig(AppConfig cfg) {
+        SortJob j = new SortJob();
+        j.sourceDir = cfg.sourceDir;
+        j.filenameTemplate = (cfg.filenameTemplate == null || cfg.filenameTemplate.isBlank()) ? "*.*" : cfg.filenameTemplate;
+        j.dateSource = cfg.dateSource == null ? DateSource.METADATA : cfg.dateSource;
+        j.mode = cfg.linkMode ? TransferMode.LINK : cfg.copyMode ? TransferMode.COPY : TransferMode.MOVE;
+        j.walk = walkOptions(cfg);
+        j.destDir = cfg.destDir;
+        j.destTemplate = (cfg.destTemplate == null || cfg.destTemplate.isBlank()) ? "YYYYMMDD" : cfg.destTemplate;
+        j.precreateDirs = cfg.precreateDirs;
+        j.resolveDuplicates = cfg.resolveDuplicates;
+        j.useArchiveIndex = cfg.useArchiveIndex;
+        j.resumable = cfg.resumableJobs;
+        j.useDateCache = cfg.useDateCache;
+        j.dateCacheMaxEntries = cfg.dateCacheMaxEntries;
+        return j;
+    }
+
+    public static SourceWalker.Options walkOptions(AppConfig cfg) {
+        SourceWalker.Options o = new SourceWalker.Options();
+        o.recursive = cfg.recursive;
+        o.maxDepth = cfg.maxDepth;
+        if (cfg.includeGlobs != null) o.includeGlobs = List.copyOf(cfg.includeGlobs);
+        if (cfg.excludeGlobs != null) o.excludeGlobs = List.copyOf(cfg.excludeGlobs);
+        if (cfg.destDir != null && !cfg.destDir.isBlank()) o.skipDir = Path.of(cfg.destDir);
+        return o;
+    }
+}
@@ -0,0 +1,94 @@
+package com.pavelkuzmin.sortit.engine;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Живые счётчики прогона. Пишут рабочие потоки, читает UI (без блокировок). */
+public class SortStats {
+    public final AtomicInteger listed = new AtomicInteger();     // найдено подходящих файлов
+    public final AtomicInteger dated = new AtomicInteger();      // дата определена
+    public final AtomicInteger completed = new AtomicInteger();  // файл покинул конвейер (успех или ошибка)
+    public final AtomicInteger ok = new AtomicInteger();         // скопировано/перенесено
+    public final AtomicInteger errors = new AtomicInteger();
+    public final AtomicInteger linked = new AtomicInteger();     // режим ссылок: создано ссылок
+    public final AtomicInteger linkFallbacks = new AtomicInteger(); // режим ссылок: пришлось копировать
+    public final AtomicInteger renamed = new AtomicInteger();    // перенос: rename в пределах тома
+    public final AtomicInteger movedAcross = new AtomicInteger(); // перенос: копия на другой том + удаление
+    public final AtomicInteger sourceKept = new AtomicInteger();  // перенос: копия на месте, исходник не удалился
+    public final AtomicInteger duplicates = new AtomicInteger(); // такой же файл уже был в назначении — пропущен
+    public final AtomicInteger suffixed = new AtomicInteger();   // имя занято другим файлом — записан как "имя (N)"
+    public final AtomicInteger fullCompares = new AtomicInteger(); // пар, дошедших до побайтного сравнения
+    public final AtomicInteger conflicts = new AtomicInteger();  // план: имя занято на диске или в самом плане
+    public final AtomicLong bytes = new AtomicLong();            // байт перенесено успешно
+    public final AtomicLong bytesCopied = new AtomicLong();      // байт записано копированием, растёт и внутри файла
+    // объём файлов по итогу (размер исходника): куда ушли байты прогона
+    public final AtomicLong copiedBytes = new AtomicLong();      // скопировано (и ссылки)
+    public final AtomicLong movedBytes = new AtomicLong();       // перенесено
+    public final AtomicLong skippedBytes = new AtomicLong();     // пропущено: дубль, уже в архиве, сделано до перезапуска
+    public final AtomicLong failedBytes = new AtomicLong();      // не перенесено из-за ошибки
+
+    public final StageMetrics metrics = new StageMetrics();      // время по стадиям, перцентили — в итоговый лог
+
+    public volatile long startedNanos;
+    public volatile long finishedNanos;
+
+    public volatile long metadataReads;   // полных разборов метаданных за прогон (ожидаем ≤ 1 на файл)
+    public volatile long cacheHits;
+    public volatile long cacheMisses;
+    public volatile long archived;        // пропущено: то же содержимое уже есть в архиве (индекс)
+    public final AtomicInteger resumedDone = new AtomicInteger(); // перезапуск: строк задачи уже было сделано
+    public final AtomicInteger batches = new AtomicInteger();    // наблюдение: порций новых файлов
+    public volatile long watchEvents;     // наблюдение: событий файловой системы
+    public volatile int pending;          // наблюдение: файлов ждут, пока их допишут
+    private volatile Collection<?> listQueue;   // «найдено → дата»
+    private volatile Collection<?> planQueue;   // «дата → перенос»
+
+    public volatile int planFolders;      // план: разных папок назначения
+    public volatile int mkdirs;           // вызовов createDirectories (≈ числу разных папок, а не файлов)
+
+    public volatile String journalFailure; // журнал не открылся/не записался — текст ошибки
+
+    public volatile boolean resumedJob;   // продолжена незавершённая задача из .sortit-job
+    public volatile boolean listingDone;
+    public volatile boolean cancelled;
+
+    /** Сброс счётчиков по файлам между фазами возобновляемой задачи (план → выполнение). */
+    void resetCounters() {
+        for (AtomicInteger a : new AtomicInteger[]{listed, dated, completed, ok, errors, linked, linkFallbacks,
+                renamed, movedAcross, sourceKept, duplicates, suffixed, fullCompares, conflicts, resumedDone, batches}) a.set(0);
+        for (AtomicLong a : new AtomicLong[]{bytes, bytesCopied, copiedBytes, movedBytes, skippedBytes, failedBytes}) a.set(0);
+        listingDone = false;
+    }
+
+    void queues(Collection<?> list, Collection<?> plan) {
+        listQueue = list;
+        planQueue = plan;
+    }
+
+    /** Глубина очереди «найдено → дата» сейчас. */
+    public int listQueued() {
+        Collection<?> q = listQueue;
+        return q == null ? 0 : q.size();
+    }
+
+    /** Глубина очереди «дата → перенос» сейчас. */
+    public int planQueued() {
+        Collection<?> q = planQueue;
+        return q == null ? 0 : q.size();
+    }
+
+    /** Процент выполнения 0..100; пока листинг не закончен — оценка по expectedTotal. */
+    public int percent(int expectedTotal) {
+        int total = listingDone ? listed.get() : Math.max(listed.get(), expectedTotal);
+        if (total <= 0) return listingDone ? 100 : 0;
+        return (int) Math.min(100, completed.get() * 100L / total);
+    }
+
+    /** Прошло времени с начала прогона (до его окончания, если он уже завершён), сек. */
+    public double elapsedSeconds() {
+        if (startedNanos == 0) return 0;
+        long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+        return (end - startedNanos) / 1e9;
+    }
+}
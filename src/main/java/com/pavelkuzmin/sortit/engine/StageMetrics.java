@@ -0,0 +1,59 @@
+package com.pavelkuzmin.sortit.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Время по стадиям конвейера: гистограмма длительностей на каждую стадию
+ * (число операций — её count). Имена стадий:
+ *  - "list" — чтение одной папки источника (без ожидания очереди);
+ *  - "date SRC .ext" — разбор даты (METADATA/FILENAME/CREATED × тип файла), "date cache" — поиск в кэше;
+ *  - "mkdir" — реальный вызов createDirectories;
+ *  - "transfer OUTCOME" — перенос файла целиком, по итогу (COPIED, RENAMED, FAILED...).
+ * Те же места пишут события JFR (SortEvents).
+ */
+public final class StageMetrics {
+
+    private final Map<String, LatencyHistogram> stages = new ConcurrentHashMap<>();
+
+    public LatencyHistogram stage(String name) {
+        return stages.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    void record(String stage, long t0) {
+        stage(stage).recordNanos(System.nanoTime() - t0);
+    }
+
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    /** Тип файла для имени стадии: расширение в нижнем регистре, странные — "other". */
+    static String fileType(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0 || dot == name.length() - 1) return "(none)";
+        String ext = name.substring(dot + 1);
+        if (ext.length() > 5 || !ext.chars().allMatch(Character::isLetterOrDigit)) return "other";
+        return "." + ext.toLowerCase(Locale.ROOT);
+    }
+
+    /** Таблица для лога: стадия, операций, p50/p90/p99/max и сумма, по имени стадии. */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "%-26s %9s %9s %9s %9s %9s %10s",
+                "stage", "count", "p50 ms", "p90 ms", "p99 ms", "max ms", "total s"));
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(stages).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            if (h.count() == 0) continue;
+            lines.add(String.format(Locale.ROOT, "%-26s %9d %9.3f %9.3f %9.3f %9.3f %10.3f",
+                    e.getKey(), h.count(),
+                    h.percentileMicros(50) / 1000.0, h.percentileMicros(90) / 1000.0,
+                    h.percentileMicros(99) / 1000.0, h.maxMicros() / 1000.0, h.totalMicros() / 1e6));
+        }
+        return lines;
+    }
+}
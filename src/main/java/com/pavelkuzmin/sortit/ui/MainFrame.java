@@ -3,10 +3,13 @@ package com.pavelkuzmin.sortit.ui;
 import com.pavelkuzmin.sortit.config.AppConfig;
 import com.pavelkuzmin.sortit.config.ConfigIO;
 import com.pavelkuzmin.sortit.config.DateSource;
-import com.pavelkuzmin.sortit.core.ExifDateExtractor;
+import com.pavelkuzmin.sortit.config.TransferMode;
 import com.pavelkuzmin.sortit.core.FileFinder;
-import com.pavelkuzmin.sortit.core.FilenameDateParser;
 import com.pavelkuzmin.sortit.core.FolderTemplate;
+import com.pavelkuzmin.sortit.engine.ProgressMeter;
+import com.pavelkuzmin.sortit.engine.SortEngine;
+import com.pavelkuzmin.sortit.engine.SortJob;
+import com.pavelkuzmin.sortit.engine.SortStats;
 import com.pavelkuzmin.sortit.i18n.Strings;
 import com.pavelkuzmin.sortit.ui.dialogs.LogViewerDialog;
 import com.pavelkuzmin.sortit.ui.panels.DestPanel;
@@ -19,10 +22,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
-import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 
 public class MainFrame extends JFrame {
 
@@ -31,14 +31,26 @@ public class MainFrame extends JFrame {
     private final DestPanel destPanel = new DestPanel();
 
     private final JButton btnSortIt = new JButton(Strings.get("run.button"));
+    private final JButton btnPause = new JButton(Strings.get("run.pause"));
+    private final JButton btnCancel = new JButton(Strings.get("run.cancel"));
+    private final JButton btnPlan = new JButton(Strings.get("run.plan"));
+    private final JButton btnRunPlan = new JButton(Strings.get("run.runPlan"));
     private final JCheckBox chkShowResults = new JCheckBox(Strings.get("run.showResult"), false);
+    private final JCheckBox chkWatch = new JCheckBox(Strings.get("run.watch"), false);
 
     private final JProgressBar progress = new JProgressBar(0, 100);
     private final JLabel lblStatus = new JLabel(Strings.get("status.ready"));
+    private final JLabel lblDetails = new JLabel(" ");   // во время прогона: очереди и байты по итогам
 
     private final FileFinder finder = new FileFinder();
+    private SwingWorker<FileFinder.Result, Void> scanWorker;   // идущий фоновый скан (только EDT)
     private AppConfig config = ConfigIO.loadOrDefaults();
 
+    private volatile SortEngine engine;   // текущий прогон (null — простаиваем)
+    private Timer progressTimer;
+    private boolean watching;             // идёт наблюдение и его ещё не останавливали (только EDT)
+    private static final int PROGRESS_MS = 250;           // чаще EDT не трогаем, как бы быстро ни шёл прогон
+
     public MainFrame() {
         super("SortIt"); // заголовок зададим позже после выбора языка
 
@@ -86,13 +98,28 @@ public class MainFrame extends JFrame {
         btnSortIt.setFocusPainted(false);
 
         actionRow.add(btnSortIt);
+        actionRow.add(btnPause);
+        actionRow.add(btnCancel);
+        btnPause.setEnabled(false);
+        btnCancel.setEnabled(false);
         actionRow.add(chkShowResults);
+        chkWatch.setToolTipText(Strings.get("hint.watch"));
+        actionRow.add(chkWatch);
         center.add(actionRow);
 
+        // план: посмотреть, что будет сделано, и выполнить ровно его
+        JPanel planRow = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        btnPlan.setToolTipText(Strings.get("hint.plan"));
+        btnRunPlan.setToolTipText(Strings.get("hint.runPlan"));
+        planRow.add(btnPlan);
+        planRow.add(btnRunPlan);
+        center.add(planRow);
+
         JPanel statusBar = new JPanel(new BorderLayout(6, 6));
         progress.setStringPainted(true);
         statusBar.add(progress, BorderLayout.NORTH);
-        statusBar.add(lblStatus, BorderLayout.SOUTH);
+        statusBar.add(lblStatus, BorderLayout.CENTER);
+        statusBar.add(lblDetails, BorderLayout.SOUTH);
 
         var content = getContentPane();
         content.setLayout(new BorderLayout(8, 8));
@@ -109,6 +136,10 @@ public class MainFrame extends JFrame {
         sourcePanel.setOnTemplateChanged(this::runScanUpdate);
 
         btnSortIt.addActionListener(e -> onSortItClicked());
+        btnPlan.addActionListener(e -> onPlanClicked());
+        btnRunPlan.addActionListener(e -> onRunPlanClicked());
+        btnPause.addActionListener(e -> onPauseClicked());
+        btnCancel.addActionListener(e -> onCancelClicked());
 
         addWindowListener(new java.awt.event.WindowAdapter() {
             @Override public void windowClosing(java.awt.event.WindowEvent e) {
@@ -179,8 +210,29 @@ public class MainFrame extends JFrame {
             return;
         }
 
-        var res = finder.scan(src, sourcePanel.getFilenameTemplate());
+        config.recursive = sourcePanel.isRecursive();
+        String template = sourcePanel.getFilenameTemplate();
+        var walk = SortJob.walkOptions(config);
+        // с рекурсией это обход всего дерева — не в EDT; результат устаревшего скана отбрасываем
+        SwingWorker<FileFinder.Result, Void> worker = new SwingWorker<>() {
+            @Override protected FileFinder.Result doInBackground() {
+                return finder.scan(src, template, walk);
+            }
+            @Override protected void done() {
+                if (scanWorker != this || engine != null) return;
+                scanWorker = null;
+                try {
+                    showScanResult(get());
+                } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                    lblStatus.setText(Strings.get("scan.source.missing"));
+                }
+            }
+        };
+        scanWorker = worker;
+        worker.execute();
+    }
 
+    private void showScanResult(FileFinder.Result res) {
         if (res.sourceMissing) { lblStatus.setText(Strings.get("scan.source.missing")); return; }
         if (res.emptySource)   { lblStatus.setText(Strings.get("scan.empty")); return; }
 
@@ -197,136 +249,185 @@ public class MainFrame extends JFrame {
 
     // ===== запуск обработки =====
     private void onSortItClicked() {
+        SortJob job = prepareJob();
+        if (job == null) return;
+        // наблюдение: после того, что уже лежит в папке, сортировать новое, пока не остановят
+        job.watch = chkWatch.isSelected();
+        startRun(job, null);
+    }
+
+    /** План без переноса: тот же листинг и даты, строки — в выбранный файл; по окончании он открывается. */
+    private void onPlanClicked() {
+        SortJob job = prepareJob();
+        if (job == null) return;
+        String ts = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        JFileChooser ch = new JFileChooser(new File("."));
+        ch.setDialogTitle(Strings.get("run.plan.choose"));
+        ch.setSelectedFile(new File("sortit-plan-" + ts + ".tsv"));
+        if (ch.showSaveDialog(this) != JFileChooser.APPROVE_OPTION || ch.getSelectedFile() == null) return;
+        job.planOutput = ch.getSelectedFile().getAbsolutePath();
+        startRun(job, ch.getSelectedFile());
+    }
+
+    /** Выполнить сохранённый план: корни и шаблон — из его заголовка, способ переноса — из окна. */
+    private void onRunPlanClicked() {
+        JFileChooser ch = new JFileChooser(new File("."));
+        ch.setDialogTitle(Strings.get("run.runPlan.choose"));
+        if (ch.showOpenDialog(this) != JFileChooser.APPROVE_OPTION || ch.getSelectedFile() == null) return;
+        writeUiToConfig();
+        ConfigIO.save(config);
+        SortJob job = SortJob.fromConfig(config);
+        job.planInput = ch.getSelectedFile().getAbsolutePath();
+        startRun(job, null);
+    }
+
+    /** Проверить поля окна и собрать задание; null — что-то не так (уже сказали). */
+    private SortJob prepareJob() {
         String src = sourcePanel.getSourceDir();
         if (src.isBlank() || !Files.exists(Path.of(src)) || !Files.isDirectory(Path.of(src))) {
             lblStatus.setText(Strings.get("scan.source.missing"));
-            return;
+            return null;
         }
 
-        var res = finder.scan(src, sourcePanel.getFilenameTemplate());
-        if (res.emptySource) { lblStatus.setText(Strings.get("scan.empty")); return; }
-        if (res.matchedFiles == 0) {
-            lblStatus.setText(MessageFormat.format(Strings.get("scan.total.zero"), res.totalFiles));
-            return;
-        } else {
-            lblStatus.setText(MessageFormat.format(Strings.get("scan.found"), res.matchedFiles));
-        }
+        config.recursive = sourcePanel.isRecursive();
+        // отдельного сканирования перед прогоном нет: сколько всего файлов, узнаёт листинг
+        // движка (stats.listed), ProgressMeter до его конца считает итог неизвестным
 
         String dst = destPanel.getDestDir();
-        if (dst.isBlank()) { warn(Strings.get("warn.dest.empty")); destPanel.focusDest(); return; }
+        if (dst.isBlank()) { warn(Strings.get("warn.dest.empty")); destPanel.focusDest(); return null; }
 
         String folderTpl = destPanel.getTemplate().isBlank() ? "YYYYMMDD" : destPanel.getTemplate();
         if (!FolderTemplate.isValid(folderTpl)) {
             warn(Strings.get("error.dest.template.invalid"));
-            return;
+            return null;
         }
 
         writeUiToConfig();
         ConfigIO.save(config);
 
+        SortJob job = SortJob.fromConfig(config);
+        job.destTemplate = folderTpl;
+        return job;
+    }
+
+    /** plan — файл строящегося плана (открыть по окончании); null — обычный прогон с логом. */
+    private void startRun(SortJob job, File plan) {
         setBusy(true);
         progress.setValue(0);
         lblStatus.setText(Strings.get("status.running"));
 
-        SwingUtilities.invokeLater(() -> {
-            List<String> errors = new ArrayList<>();
-            int processed = 0;
-            int ok = 0;
-
-            try (DirectoryStream<Path> ds = Files.newDirectoryStream(Path.of(src))) {
-                var rx = globToRegex(sourcePanel.getFilenameTemplate());
-
-                for (Path p : ds) {
-                    if (!Files.isRegularFile(p)) continue;
-                    String name = p.getFileName().toString();
-                    if (!rx.matcher(name).matches()) continue;
-
-                    processed++;
-
-                    LocalDate date = null;
-                    switch (sourcePanel.getDateSource()) {
-                        case METADATA -> {
-                            var d = com.pavelkuzmin.sortit.core.MediaDateExtractor.readDate(p.toFile());
-                            if (d.isPresent()) date = d.get();
-                            else errors.add(MessageFormat.format(Strings.get("error.no.metadata"), name));
-                        }
-                        case CREATED -> {
-                            try {
-                                var attrs = Files.readAttributes(p, java.nio.file.attribute.BasicFileAttributes.class);
-                                var ct = attrs.creationTime();
-                                if (ct != null) {
-                                    date = ct.toInstant().atZone(java.time.ZoneId.systemDefault()).toLocalDate();
-                                } else {
-                                    errors.add(MessageFormat.format(Strings.get("error.no.created"), name));
-                                }
-                            } catch (Exception ex) {
-                                errors.add(MessageFormat.format(Strings.get("error.no.created"), name));
-                            }
-                        }
-                        case FILENAME -> {
-                            var d = FilenameDateParser.parse(name);
-                            if (d.isPresent()) date = d.get();
-                            else errors.add(MessageFormat.format(Strings.get("error.no.date.in.name"), name));
-                        }
-                    }
+        scanWorker = null;   // запоздавший фоновый скан не должен перетереть статус прогона
+        // журнал пишется по ходу прогона; лог с итогами — рядом, с тем же временем в имени
+        String ts = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        job.journalFile = "sortit-" + ts + ".jsonl";
+        engine = new SortEngine(job, (stats, journal) -> SwingUtilities.invokeLater(() -> {
+            progressTimer.stop();
+            progress.setValue(100);
+            progress.setString(null);
+            lblDetails.setText(" ");
+            engine = null;
+            setBusy(false);
+            if (plan != null) {
+                lblStatus.setText(MessageFormat.format(Strings.get("status.plan.done"),
+                        stats.ok.get(), stats.conflicts.get(), stats.errors.get()));
+                showLog(plan);
+                return;
+            }
+            int processedCount = stats.listed.get();
+            writeProcessLog(stats, journal, ts);
+            lblStatus.setText(MessageFormat.format(Strings.get("status.done"), processedCount, stats.errors.get()));
+            if (chkShowResults.isSelected()) showLatestLog();
+        }));
+
+        // прогресс — по реальным счётчикам движка; показания снимает таймер, движок UI не дёргает
+        ProgressMeter meter = new ProgressMeter(engine.getStats(), 0);
+        progressTimer = new Timer(PROGRESS_MS, ev -> {
+            SortEngine e = engine;
+            if (e == null || e.isPaused()) return;
+            if (job.watch) showWatching(e.getStats());
+            else showProgress(e.getStats(), meter);
+        });
+        watching = job.watch;
+        if (job.watch) {
+            progress.setIndeterminate(true);
+            btnCancel.setText(Strings.get("run.stopWatch"));
+        }
+        progressTimer.start();
+        engine.start();
+    }
 
-                    if (date == null) continue;
+    private void showProgress(SortStats st, ProgressMeter meter) {
+        meter.sample();
+        String eta = ProgressMeter.formatDuration(meter.etaSeconds());
+        progress.setValue(meter.percent());
+        progress.setString(meter.percent() + "%  ·  ETA " + eta);
+        setIfChanged(lblStatus, MessageFormat.format(Strings.get("status.progress"),
+                st.completed.get(), meter.total(),
+                String.format("%.0f", meter.filesPerSecond()),
+                String.format("%.1f", meter.bytesPerSecond() / (1024 * 1024)), eta));
+        setIfChanged(lblDetails, MessageFormat.format(Strings.get("status.details"),
+                st.listQueued(), st.planQueued(),
+                mb(st.copiedBytes.get()), mb(st.movedBytes.get()), mb(st.skippedBytes.get()), mb(st.failedBytes.get())));
+    }
 
-                    String folderName = FolderTemplate.apply(folderTpl, date);
-                    Path targetDir = Path.of(dst, folderName);
-                    try {
-                        Files.createDirectories(targetDir);
-                    } catch (Exception ex) {
-                        errors.add(MessageFormat.format(Strings.get("error.dest.mkdir"), name, targetDir.toString(), ex.getMessage()));
-                        continue;
-                    }
+    /** Наблюдение: итога нет — сколько разложено, сколько ждёт, сколько было порций. */
+    private void showWatching(SortStats st) {
+        setIfChanged(lblStatus, MessageFormat.format(Strings.get("status.watching"),
+                st.completed.get(), st.pending, st.batches.get(), st.errors.get()));
+        setIfChanged(lblDetails, MessageFormat.format(Strings.get("status.details"),
+                st.listQueued(), st.planQueued(),
+                mb(st.copiedBytes.get()), mb(st.movedBytes.get()), mb(st.skippedBytes.get()), mb(st.failedBytes.get())));
+    }
 
-                    Path target = targetDir.resolve(name);
-                    if (Files.exists(target)) {
-                        errors.add(MessageFormat.format(Strings.get("error.dest.exists"), name, target.toString()));
-                        continue;
-                    }
+    private static String mb(long bytes) {
+        return String.format("%.1f", bytes / (1024.0 * 1024));
+    }
 
-                    try {
-                        if (sourcePanel.isCopyMode()) {
-                            Files.copy(p, target);
-                        } else {
-                            try {
-                                Files.move(p, target);
-                            } catch (AtomicMoveNotSupportedException e) {
-                                Files.copy(p, target);
-                                Files.delete(p);
-                            }
-                        }
-                        ok++;
-                    } catch (Exception ex) {
-                        errors.add(MessageFormat.format(Strings.get("error.transfer"), name, target.toString(), ex.getMessage()));
-                    }
-                }
-            } catch (Exception e) {
-                errors.add("Internal error: " + e.getMessage());
-            }
+    /** Перерисовка только при изменении текста. */
+    private static void setIfChanged(JLabel l, String text) {
+        if (!text.equals(l.getText())) l.setText(text);
+    }
 
-            final int processedCount = processed;
-            final int errorsCount = errors.size();
-            writeProcessLog(processedCount, errors);
-
-            new Timer(15, ev -> {
-                int v = progress.getValue();
-                if (v >= 100) {
-                    ((Timer) ev.getSource()).stop();
-                    lblStatus.setText(MessageFormat.format(Strings.get("status.done"), processedCount, errorsCount));
-                    setBusy(false);
-                    if (chkShowResults.isSelected()) showLatestLog();
-                } else {
-                    progress.setValue(v + 2);
-                }
-            }).start();
-        });
+    private void onPauseClicked() {
+        SortEngine e = engine;
+        if (e == null) return;
+        if (e.isPaused()) {
+            e.resume();
+            btnPause.setText(Strings.get("run.pause"));
+            lblStatus.setText(Strings.get("status.running"));
+        } else {
+            e.pause();
+            btnPause.setText(Strings.get("run.resume"));
+            lblStatus.setText(Strings.get("status.paused"));
+        }
+    }
+
+    private void onCancelClicked() {
+        SortEngine e = engine;
+        if (e != null && watching) {
+            // первое нажатие при наблюдении — перестать ждать новое и дообработать принятое
+            e.stopWatching();
+            watching = false;
+            btnCancel.setText(Strings.get("run.cancel"));
+            return;
+        }
+        if (e != null) e.cancel();
+        btnCancel.setEnabled(false);
+        btnPause.setEnabled(false);
     }
 
     private void setBusy(boolean busy) {
         btnSortIt.setEnabled(!busy);
+        chkWatch.setEnabled(!busy);
+        if (!busy) {
+            progress.setIndeterminate(false);
+            btnCancel.setText(Strings.get("run.cancel"));
+        }
+        btnPlan.setEnabled(!busy);
+        btnRunPlan.setEnabled(!busy);
+        btnPause.setEnabled(busy);
+        btnPause.setText(Strings.get("run.pause"));
+        btnCancel.setEnabled(busy);
         sourcePanel.setEnabledAll(!busy);
         destPanel.setEnabledAll(!busy);
     }
@@ -335,9 +436,9 @@ public class MainFrame extends JFrame {
         JOptionPane.showMessageDialog(this, msg, Strings.get("app.title"), JOptionPane.WARNING_MESSAGE);
     }
 
-    private File writeProcessLog(int processed, List<String> errors) {
+    /** Итоги прогона; сами ошибки — в журнале (journal), их текст собирает LogViewerDialog при показе. */
+    private File writeProcessLog(SortStats stats, Path journal, String ts) {
         try {
-            String ts = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
             File f = new File("sortit-" + ts + ".log");
             try (BufferedWriter w = new BufferedWriter(new FileWriter(f, false))) {
                 w.write(Strings.get("log.header")); w.newLine();
@@ -353,20 +454,50 @@ public class MainFrame extends JFrame {
                 };
                 w.write(MessageFormat.format(Strings.get("log.dateSource"), dsText)); w.newLine();
 
-                w.write(MessageFormat.format(Strings.get("log.mode"),
-                        sourcePanel.isCopyMode() ? Strings.get("log.mode.copy") : Strings.get("log.mode.move"))); w.newLine();
+                String modeText = switch (sourcePanel.getTransferMode()) {
+                    case MOVE -> Strings.get("log.mode.move");
+                    case LINK -> Strings.get("log.mode.link");
+                    default   -> Strings.get("log.mode.copy");
+                };
+                w.write(MessageFormat.format(Strings.get("log.mode"), modeText)); w.newLine();
                 w.newLine();
 
                 w.write(Strings.get("log.total")); w.newLine();
-                w.write(MessageFormat.format(Strings.get("log.processed"), processed)); w.newLine();
-                w.write(MessageFormat.format(Strings.get("log.errors"), errors.size())); w.newLine();
-                if (!errors.isEmpty()) {
-                    w.newLine();
-                    w.write(Strings.get("log.errors.header")); w.newLine();
-                    for (int i = 0; i < errors.size(); i++) {
-                        w.write((i + 1) + ") " + errors.get(i)); w.newLine();
+                w.write(MessageFormat.format(Strings.get("log.processed"), stats.listed.get())); w.newLine();
+                w.write(MessageFormat.format(Strings.get("log.errors"), stats.errors.get())); w.newLine();
+                if (sourcePanel.getDateSource() == DateSource.METADATA) {
+                    w.write(MessageFormat.format(Strings.get("log.metadataReads"), stats.metadataReads)); w.newLine();
+                }
+                if (config.useDateCache && sourcePanel.getDateSource() != DateSource.FILENAME) {
+                    w.write(MessageFormat.format(Strings.get("log.dateCache"), stats.cacheHits, stats.cacheMisses)); w.newLine();
+                }
+                w.write(MessageFormat.format(Strings.get("log.mkdirs"), stats.mkdirs)); w.newLine();
+                if (config.useArchiveIndex) {
+                    w.write(MessageFormat.format(Strings.get("log.archived"), stats.archived)); w.newLine();
+                }
+                if (config.resolveDuplicates) {
+                    w.write(MessageFormat.format(Strings.get("log.duplicates"), stats.duplicates.get(), stats.suffixed.get())); w.newLine();
+                }
+                if (sourcePanel.getTransferMode() == TransferMode.MOVE) {
+                    w.write(MessageFormat.format(Strings.get("log.moves"), stats.renamed.get(), stats.movedAcross.get())); w.newLine();
+                    if (stats.sourceKept.get() > 0) {
+                        w.write(MessageFormat.format(Strings.get("log.sourceKept"), stats.sourceKept.get())); w.newLine();
                     }
                 }
+                if (sourcePanel.getTransferMode() == TransferMode.LINK) {
+                    w.write(MessageFormat.format(Strings.get("log.links"), stats.linked.get(), stats.linkFallbacks.get())); w.newLine();
+                }
+                if (journal != null) {
+                    w.write(MessageFormat.format(Strings.get("log.journal"), journal.getFileName())); w.newLine();
+                }
+                if (stats.journalFailure != null) {
+                    w.write(MessageFormat.format(Strings.get("log.journal.failed"), stats.journalFailure)); w.newLine();
+                }
+                if (!stats.metrics.isEmpty()) {
+                    w.newLine();
+                    w.write(Strings.get("log.stages")); w.newLine();
+                    for (String line : stats.metrics.summary()) { w.write(line); w.newLine(); }
+                }
             }
             return f;
         } catch (Exception ex) {
@@ -377,23 +508,6 @@ public class MainFrame extends JFrame {
         }
     }
 
-    private static java.util.regex.Pattern globToRegex(String glob) {
-        String g = (glob == null || glob.isBlank()) ? "*.*" : glob.trim();
-        StringBuilder sb = new StringBuilder("^");
-        for (char ch : g.toCharArray()) {
-            switch (ch) {
-                case '*': sb.append(".*"); break;
-                case '?': sb.append('.'); break;
-                case '.': sb.append("\\."); break;
-                default:
-                    if ("+()^$|[]{}".indexOf(ch) >= 0) sb.append('\\');
-                    sb.append(ch);
-            }
-        }
-        sb.append('$');
-        return java.util.regex.Pattern.compile(sb.toString(), java.util.regex.Pattern.CASE_INSENSITIVE);
-    }
-
     private void showLatestLog() {
         File dir = new File(".");
         File[] files = dir.listFiles((d, name) -> name.startsWith("sortit-") && name.endsWith(".log"));
@@ -403,14 +517,17 @@ public class MainFrame extends JFrame {
         }
         File latest = files[0];
         for (File f : files) if (f.lastModified() > latest.lastModified()) latest = f;
+        showLog(latest);
+    }
 
+    private void showLog(File file) {
         try {
-            LogViewerDialog.showLog(this, latest);
+            LogViewerDialog.showLog(this, file);
         } catch (Exception ex) {
-            try { Desktop.getDesktop().edit(latest); }
+            try { Desktop.getDesktop().edit(file); }
             catch (Exception ex2) {
                 JOptionPane.showMessageDialog(this,
-                        MessageFormat.format(Strings.get("error.log.open"), latest.getAbsolutePath()),
+                        MessageFormat.format(Strings.get("error.log.open"), file.getAbsolutePath()),
                         Strings.get("app.title"), JOptionPane.ERROR_MESSAGE);
             }
         }
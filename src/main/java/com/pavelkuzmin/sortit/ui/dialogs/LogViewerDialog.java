@@ -1,26 +1,56 @@
 package com.pavelkuzmin.sortit.ui.dialogs;
 
+import com.pavelkuzmin.sortit.engine.RunJournal;
+import com.pavelkuzmin.sortit.i18n.Strings;
+
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 
+/**
+ * Просмотр лога прогона и ошибок из его журнала. Файлы не читаются целиком: они
+ * отображаются в память (MappedLines), список рисует только видимые строки, поэтому
+ * журнал на сотни мегабайт открывается сразу, а строки появляются по ходу индексации.
+ */
 public class LogViewerDialog extends JDialog {
 
+    /** Строки журнала с ошибками (и оставшимися исходниками): запись всегда начинается с поля outcome. */
+    private static final String[] FAILED_PREFIXES = {
+            "{\"outcome\":\"" + RunJournal.Outcome.FAILED + "\"",
+            "{\"outcome\":\"" + RunJournal.Outcome.SOURCE_KEPT + "\"",
+            "{\"outcome\":\"" + RunJournal.Outcome.ERROR + "\""};
+
+    private final MappedLines log;
+    private final Path journalFile;
+    private MappedLines journal;          // только ошибки или весь журнал (chkAll)
+    private final LinesModel model = new LinesModel();
+    private final JList<String> list = new JList<>(model);
+    private final JLabel status = new JLabel(" ");
+    private final JTextField query = new JTextField(24);
+    private final JButton btnFind = new JButton("Найти далее");
+    private final JCheckBox chkAll = new JCheckBox("Весь журнал");
+
     private LogViewerDialog(Frame owner, File logFile) throws Exception {
         super(owner, "Результат обработки (лог)", true);
         setMinimumSize(new Dimension(800, 600));
         setLocationRelativeTo(owner);
 
-        JTextArea area = new JTextArea();
-        area.setEditable(false);
-        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        log = MappedLines.open(logFile.toPath());
+        journalFile = journalOf(logFile);
+        try {
+            journal = journalFile == null ? null : MappedLines.open(journalFile, FAILED_PREFIXES);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
 
-        String text = Files.readString(logFile.toPath());
-        area.setText(text);
-        area.setCaretPosition(0);
-
-        JScrollPane scroll = new JScrollPane(area);
+        list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight());
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        JScrollPane scroll = new JScrollPane(list);
 
         JButton btnOpenInNotepad = new JButton("Открыть в Блокноте");
         JButton btnClose = new JButton("Закрыть");
@@ -33,15 +63,204 @@ public class LogViewerDialog extends JDialog {
             }
         });
         btnClose.addActionListener(e -> dispose());
+        btnFind.addActionListener(e -> findNext());
+        query.addActionListener(e -> findNext());
+        chkAll.setEnabled(journalFile != null);
+        chkAll.addActionListener(e -> switchJournal(chkAll.isSelected()));
+
+        JPanel search = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        search.add(new JLabel("Поиск:"));
+        search.add(query);
+        search.add(btnFind);
+        search.add(chkAll);
 
-        JPanel footer = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 8));
-        footer.add(btnOpenInNotepad);
-        footer.add(btnClose);
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.add(status, BorderLayout.WEST);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 8));
+        buttons.add(btnOpenInNotepad);
+        buttons.add(btnClose);
+        footer.add(buttons, BorderLayout.EAST);
 
         getContentPane().setLayout(new BorderLayout(8, 8));
+        getContentPane().add(search, BorderLayout.NORTH);
         getContentPane().add(scroll, BorderLayout.CENTER);
         getContentPane().add(footer, BorderLayout.SOUTH);
         getRootPane().setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        log.startIndexing(this::indexed);
+        if (journal != null) journal.startIndexing(this::indexed);
+    }
+
+    /** Журнал прогона лежит рядом с логом: sortit-X.log → sortit-X.jsonl. */
+    private static Path journalOf(File logFile) {
+        String name = logFile.getName();
+        if (!name.endsWith(".log")) return null;
+        Path j = logFile.toPath().resolveSibling(name.substring(0, name.length() - 4) + ".jsonl");
+        return Files.isRegularFile(j) ? j : null;
+    }
+
+    /** Из потока индексации; список обновляется в EDT (не чаще, чем индекс публикуется). */
+    private void indexed() {
+        SwingUtilities.invokeLater(() -> {
+            model.refresh();
+            updateStatus();
+        });
+    }
+
+    private void switchJournal(boolean all) {
+        MappedLines old = journal;
+        try {
+            journal = all ? MappedLines.open(journalFile) : MappedLines.open(journalFile, FAILED_PREFIXES);
+        } catch (IOException ex) {
+            chkAll.setSelected(!all);
+            status.setText(journalFile + ": " + ex.getMessage());
+            return;
+        }
+        model.reset();
+        journal.startIndexing(this::indexed);
+        closeQuietly(old);
+    }
+
+    private void updateStatus() {
+        boolean done = log.complete() && (journal == null || journal.complete());
+        status.setText("Строк: " + model.getSize() + (done ? "" : " (индексируется…)"));
+    }
+
+    // ===== поиск =====
+
+    /** Следующее вхождение после выделенной строки; поиск идёт в фоне, по кругу. */
+    private void findNext() {
+        String q = query.getText();
+        if (q.isEmpty()) return;
+        int from = list.getSelectedIndex() + 1;
+        MappedLines j = journal;
+        int logRows = model.logRows;
+        btnFind.setEnabled(false);
+        status.setText("Поиск…");
+        Thread t = new Thread(() -> {
+            int row;
+            try {
+                row = find(q, from, j, logRows);
+                if (row < 0 && from > 0) row = find(q, 0, j, logRows);
+            } catch (InterruptedException e) {
+                row = -1;
+            }
+            int found = row;
+            SwingUtilities.invokeLater(() -> {
+                btnFind.setEnabled(true);
+                if (journal != j) return; // журнал переключили, пока искали
+                model.refresh();
+                if (found < 0 || found >= model.getSize()) {
+                    updateStatus();
+                    status.setText(status.getText() + " — «" + q + "» не найдено");
+                    return;
+                }
+                list.setSelectedIndex(found);
+                list.ensureIndexIsVisible(found);
+                updateStatus();
+            });
+        }, "sortit-log-search");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Номер строки списка с вхождением, начиная со строки from, или -1. */
+    private int find(String q, int from, MappedLines j, int logRows) throws InterruptedException {
+        if (from < logRows) {
+            int line = findIn(log, q, log.start(from));
+            if (line >= 0) return line;
+        }
+        if (j == null || !log.complete() || log.count() != logRows) return -1;
+        int first = Math.max(0, from - logRows - 1);
+        if (first >= j.count()) return -1;
+        int line = findIn(j, q, j.start(first));
+        return line < 0 ? -1 : logRows + 1 + line;
+    }
+
+    private static int findIn(MappedLines lines, String q, long offset) throws InterruptedException {
+        while (true) {
+            long hit = lines.find(q, offset);
+            if (hit < 0) return -1;
+            int line = lines.lineAt(hit);
+            if (line >= 0) return line;
+            offset = lines.nextStart(hit); // вхождение в строке, которую список не показывает
+            if (offset < 0) return -1;
+        }
+    }
+
+    // ===== список =====
+
+    /**
+     * Строки лога, затем (когда лог проиндексирован) заголовок и строки журнала.
+     * Размер меняется только в EDT (refresh), строки берутся из отображения при показе.
+     */
+    private final class LinesModel extends AbstractListModel<String> {
+        int logRows;
+        int journalRows;   // с заголовком
+
+        void refresh() {
+            int old = getSize();
+            logRows = log.count();
+            int j = journal == null || !log.complete() ? 0 : journal.count();
+            journalRows = j == 0 ? 0 : j + 1;
+            int size = getSize();
+            if (size > old) fireIntervalAdded(this, old, size - 1);
+            int chars = Math.max(log.maxLineBytes(), journal == null ? 0 : journal.maxLineBytes());
+            list.setFixedCellWidth(Math.max(list.getFontMetrics(list.getFont()).charWidth('m') * (chars + 4), 200));
+        }
+
+        /** Журнал переключён: его строки заново. */
+        void reset() {
+            if (journalRows > 0) {
+                int from = logRows;
+                int to = logRows + journalRows - 1;
+                journalRows = 0;
+                fireIntervalRemoved(this, from, to);
+            }
+            refresh();
+            updateStatus();
+        }
+
+        @Override
+        public int getSize() {
+            return logRows + journalRows;
+        }
+
+        @Override
+        public String getElementAt(int i) {
+            if (i < logRows) return log.line(i);
+            if (i == logRows) return chkAll.isSelected() ? "" : Strings.get("log.errors.header");
+            int n = i - logRows - 1;
+            return renderJournal(n, journal.line(n));
+        }
+    }
+
+    /** Запись журнала на текущем языке; текст ошибки собирается только здесь, при показе. */
+    private String renderJournal(int n, String line) {
+        try {
+            RunJournal.Entry e = RunJournal.parse(line);
+            if (!chkAll.isSelected()) return (n + 1) + ") " + e.render();
+            if (e.failed()) return e.outcome() + "  " + e.render();
+            return e.outcome() + "  " + e.source() + (e.target() == null ? "" : " → " + e.target());
+        } catch (IOException ex) {
+            return line; // оборванная строка (прогон упал) — как есть
+        }
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        closeQuietly(log);
+        closeQuietly(journal);
+    }
+
+    private static void closeQuietly(MappedLines lines) {
+        if (lines == null) return;
+        try {
+            lines.close();
+        } catch (IOException ignored) {
+            // только чтение
+        }
     }
 
     public static void showLog(Frame owner, File logFile) throws Exception {
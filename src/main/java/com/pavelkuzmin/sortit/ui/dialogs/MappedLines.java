@@ -0,0 +1,304 @@
+package com.pavelkuzmin.sortit.ui.dialogs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.stream.IntStream;
+
+/**
+ * Текстовый файл, отображённый в память (mmap), с индексом строк для просмотра.
+ * Файл не читается целиком: индекс строится фоновым потоком и публикуется по мере
+ * обхода, строка декодируется только когда её показывают.
+ * Индекс хранит смещение каждой 64-й строки (8 байт на 64 строки: 1 ГБ лога —
+ * около 1 МБ индекса), остальное досчитывается от ближайшей отметки.
+ * С фильтром (prefixes) в индекс попадают только строки с одним из префиксов —
+ * тогда отмечается каждая такая строка.
+ */
+final class MappedLines implements Closeable {
+
+    private static final int SEG_BITS = 30;                  // сегмент отображения — 1 ГБ
+    private static final long SEG_MASK = (1L << SEG_BITS) - 1;
+    private static final int SPARSE_STRIDE = 64;
+    private static final int BLOCK = 1 << 14;                // отметок в блоке индекса
+    private static final int MAX_LINE = 4096;                // длиннее — обрезается при показе
+    private static final int SEARCH_PART = 8 << 20;          // кусок параллельного поиска
+    private static final long PUBLISH_NANOS = 100_000_000L;
+
+    private final Path file;
+    private final FileChannel ch;
+    private final MappedByteBuffer[] segs;
+    private final long size;
+    private final byte[][] prefixes;
+    private final int stride;
+
+    private volatile long[][] blocks = new long[16][];
+    private volatile int count;          // строк в индексе (принятых фильтром)
+    private volatile long indexedTo;     // до этого смещения индекс готов
+    private volatile int maxLine;        // самая длинная строка, байт (не больше MAX_LINE)
+    private volatile boolean complete;
+    private volatile boolean closed;
+    private int marks;                   // заполнено отметок (пишет только поток индекса)
+
+    private MappedLines(Path file, FileChannel ch, MappedByteBuffer[] segs, long size, byte[][] prefixes) {
+        this.file = file;
+        this.ch = ch;
+        this.segs = segs;
+        this.size = size;
+        this.prefixes = prefixes;
+        this.stride = prefixes == null ? SPARSE_STRIDE : 1;
+    }
+
+    /** prefixes — показывать только строки, начинающиеся с одного из них (null — все). */
+    static MappedLines open(Path file, String... prefixes) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            MappedByteBuffer[] segs = new MappedByteBuffer[(int) ((size + SEG_MASK) >>> SEG_BITS)];
+            for (int i = 0; i < segs.length; i++) {
+                long pos = (long) i << SEG_BITS;
+                segs[i] = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SEG_MASK + 1, size - pos));
+            }
+            byte[][] pre = null;
+            if (prefixes.length > 0) {
+                pre = new byte[prefixes.length][];
+                for (int i = 0; i < prefixes.length; i++) pre[i] = prefixes[i].getBytes(StandardCharsets.UTF_8);
+            }
+            return new MappedLines(file, ch, segs, size, pre);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Строить индекс в фоне. onProgress вызывается из фонового потока не чаще
+     * раза в 100 мс и один раз в конце.
+     */
+    void startIndexing(Runnable onProgress) {
+        Thread t = new Thread(() -> index(onProgress), "sortit-log-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean complete() {
+        return complete;
+    }
+
+    /** Длина самой длинной строки (байт), для ширины списка. */
+    int maxLineBytes() {
+        return maxLine;
+    }
+
+    private void index(Runnable onProgress) {
+        long start = 0;
+        int n = 0;                       // принятых строк
+        long published = System.nanoTime();
+        try {
+            for (int s = 0; s < segs.length && !closed; s++) {
+                MappedByteBuffer seg = segs[s];
+                long base = (long) s << SEG_BITS;
+                int limit = seg.limit();
+                for (int i = 0; i < limit; i++) {
+                    if ((i & 0xFFFFF) == 0 && System.nanoTime() - published > PUBLISH_NANOS) {
+                        if (closed) return;
+                        publish(n, start);
+                        onProgress.run();
+                        published = System.nanoTime();
+                    }
+                    if (seg.get(i) != '\n') continue;
+                    long end = base + i;
+                    if (accepted(start, end)) {
+                        if (n % stride == 0) mark(start);
+                        n++;
+                    }
+                    start = end + 1;
+                }
+            }
+            if (start < size && accepted(start, size)) {
+                if (n % stride == 0) mark(start);
+                n++;
+            }
+            publish(n, size);
+        } finally {
+            synchronized (this) {
+                complete = true;
+                notifyAll();     // lineAt() не должен ждать индекс, которого не будет
+            }
+            if (!closed) onProgress.run();
+        }
+    }
+
+    private boolean accepted(long start, long end) {
+        int len = (int) Math.min(end - start, MAX_LINE);
+        if (len > maxLine) maxLine = len;
+        if (prefixes == null) return true;
+        for (byte[] p : prefixes) {
+            if (end - start >= p.length && matchesAt(start, p, false)) return true;
+        }
+        return false;
+    }
+
+    private void mark(long offset) {
+        int block = marks / BLOCK;
+        long[][] b = blocks;
+        if (block == b.length) blocks = b = Arrays.copyOf(b, b.length * 2);
+        if (b[block] == null) b[block] = new long[BLOCK];
+        b[block][marks % BLOCK] = offset;
+        marks++;
+    }
+
+    private synchronized void publish(int n, long to) {
+        count = n;
+        indexedTo = to;
+        notifyAll();
+    }
+
+    private long markAt(int m) {
+        return blocks[m / BLOCK][m % BLOCK];
+    }
+
+    /** Смещение начала строки i (i < count()). */
+    long start(int i) {
+        long pos = markAt(i / stride);
+        for (int k = i % stride; k > 0; k--) pos = lineEnd(pos) + 1;
+        return pos;
+    }
+
+    private long lineEnd(long pos) {
+        return lineEnd(pos, size);
+    }
+
+    private long lineEnd(long pos, long limit) {
+        long to = Math.min(limit, size);
+        while (pos < to && get(pos) != '\n') pos++;
+        return pos;
+    }
+
+    /** Текст строки i (без перевода строки); слишком длинная обрезается. */
+    String line(int i) {
+        long start = start(i);
+        long end = lineEnd(start, start + MAX_LINE);
+        int len = (int) (end - start);
+        if (len > 0 && end <= size && get(end - 1) == '\r') len--;
+        byte[] buf = new byte[len];
+        for (int k = 0; k < len; k++) buf[k] = get(start + k);
+        String s = new String(buf, StandardCharsets.UTF_8);
+        return end - start == MAX_LINE ? s + " …" : s;
+    }
+
+    /**
+     * Номер строки, в которой лежит смещение offset, или -1 (строка отфильтрована).
+     * Если индекс до offset ещё не дошёл — ждёт его (вызывать не из EDT).
+     */
+    int lineAt(long offset) throws InterruptedException {
+        synchronized (this) {
+            while (indexedTo <= offset && !complete && !closed) wait();
+        }
+        int lo = 0, hi = (count + stride - 1) / stride - 1, m = -1;
+        while (lo <= hi) {           // последняя отметка <= offset
+            int mid = (lo + hi) >>> 1;
+            if (markAt(mid) <= offset) { m = mid; lo = mid + 1; } else hi = mid - 1;
+        }
+        if (m < 0) return -1;
+        int line = m * stride;
+        long pos = markAt(m);
+        if (stride == 1) return lineEnd(pos) >= offset ? line : -1;
+        for (long end = lineEnd(pos); end < offset; end = lineEnd(pos)) {
+            pos = end + 1;
+            line++;
+        }
+        return line < count ? line : -1;
+    }
+
+    /** Начало первой строки индекса после смещения offset (для фильтра — следующей показываемой), или -1. */
+    long nextStart(long offset) {
+        int lo = 0, hi = (count + stride - 1) / stride - 1, m = -1;
+        while (lo <= hi) {           // первая отметка > offset
+            int mid = (lo + hi) >>> 1;
+            if (markAt(mid) > offset) { m = mid; hi = mid - 1; } else lo = mid + 1;
+        }
+        return m < 0 ? -1 : markAt(m);
+    }
+
+    /**
+     * Первое вхождение needle начиная со смещения from, или -1. Файл делится на куски по
+     * 8 МБ, очередная «волна» кусков (по числу ядер) просматривается параллельно, и
+     * поиск заканчивается на первой волне с находкой. Регистр не учитывается только
+     * для латиницы (сравнение идёт по байтам UTF-8).
+     */
+    long find(String needle, long from) {
+        byte[] pat = needle.getBytes(StandardCharsets.UTF_8);
+        for (int k = 0; k < pat.length; k++) pat[k] = lower(pat[k]);
+        if (pat.length == 0 || from >= size) return -1;
+        int wave = Math.max(1, Runtime.getRuntime().availableProcessors());
+        long waveBytes = (long) wave * SEARCH_PART;
+        for (long base = from; base < size && !closed; base += waveBytes) {
+            long b0 = base;
+            OptionalLong hit = IntStream.range(0, wave).parallel()
+                    .mapToLong(k -> findIn(pat, b0 + (long) k * SEARCH_PART, Math.min(size, b0 + (long) (k + 1) * SEARCH_PART)))
+                    .filter(p -> p >= 0)
+                    .min();
+            if (hit.isPresent()) return hit.getAsLong();
+        }
+        return -1;
+    }
+
+    /** Вхождения, начинающиеся в [from, to); само вхождение может выходить за to. */
+    private long findIn(byte[] pat, long from, long to) {
+        long last = Math.min(to, size - pat.length + 1);
+        byte first = pat[0];
+        byte firstUpper = first >= 'a' && first <= 'z' ? (byte) (first - ('a' - 'A')) : first;
+        for (long p = from; p < last; ) {
+            // внутри сегмента — по int-индексу, без пересчёта сегмента на каждый байт
+            MappedByteBuffer seg = segs[(int) (p >>> SEG_BITS)];
+            long base = p & ~SEG_MASK;
+            int end = (int) (Math.min(last, base + seg.limit()) - base);
+            for (int i = (int) (p - base); i < end; i++) {
+                byte b = seg.get(i);
+                if ((b == first || b == firstUpper) && matchesAt(base + i, pat, true)) return base + i;
+            }
+            p = base + end;
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(long pos, byte[] pat, boolean ignoreCase) {
+        if (pos + pat.length > size) return false;
+        for (int k = 0; k < pat.length; k++) {
+            byte b = get(pos + k);
+            if ((ignoreCase ? lower(b) : b) != pat[k]) return false;
+        }
+        return true;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private byte get(long pos) {
+        return segs[(int) (pos >>> SEG_BITS)].get((int) (pos & SEG_MASK));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (this) {
+            notifyAll();
+        }
+        ch.close(); // отображение остаётся в силе до сборки мусора
+    }
+}
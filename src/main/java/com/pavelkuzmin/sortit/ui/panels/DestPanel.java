@@ -20,6 +20,9 @@ public class DestPanel extends JPanel {
     private final JTextField txtFolderTemplate = new JTextField("YYYYMMDD");
     private final JLabel infoFolderTpl = makeInfoIcon(Strings.get("hint.folderTemplate"));
 
+    private final JCheckBox chkDuplicates = new JCheckBox(Strings.get("dest.duplicates"));
+    private final JCheckBox chkArchiveIndex = new JCheckBox(Strings.get("dest.archiveIndex"));
+
     public DestPanel() {
         setBorder(new CompoundBorder(
                 BorderFactory.createTitledBorder(
@@ -47,6 +50,18 @@ public class DestPanel extends JPanel {
         c.gridx = 0; c.gridy = row; c.weightx = 0; add(new JLabel(Strings.get("dest.folderTemplate.label")), c);
         c.gridx = 1; c.gridy = row; c.weightx = 1; add(txtFolderTemplate, c);
         c.gridx = 2; c.gridy = row; c.weightx = 0; add(infoFolderTpl, c);
+        row++;
+
+        // Совпадение имён: сравнить содержимое
+        chkDuplicates.setToolTipText(Strings.get("hint.duplicates"));
+        c.gridx = 1; c.gridy = row; c.weightx = 1; c.gridwidth = 2; add(chkDuplicates, c);
+        c.gridwidth = 1;
+        row++;
+
+        // Индекс архива: не класть то, что уже есть в назначении (в любой папке)
+        chkArchiveIndex.setToolTipText(Strings.get("hint.archiveIndex"));
+        c.gridx = 1; c.gridy = row; c.weightx = 1; c.gridwidth = 2; add(chkArchiveIndex, c);
+        c.gridwidth = 1;
 
         // 🔧 ВОТ ЭТИ ДВА ВЫЗОВА Я И УПУСТИЛ РАНЬШЕ:
         setupFolderIcon(btnBrowseDest, Strings.get("dest.dir.choose.tooltip"));
@@ -107,18 +122,24 @@ public class DestPanel extends JPanel {
         btnBrowseDest.setEnabled(enabled);
         txtFolderTemplate.setEnabled(enabled);
         infoFolderTpl.setEnabled(enabled);
+        chkDuplicates.setEnabled(enabled);
+        chkArchiveIndex.setEnabled(enabled);
     }
 
     public void applyConfig(AppConfig cfg) {
         txtDest.setText(cfg.destDir == null ? "" : cfg.destDir);
         String t = (cfg.destTemplate == null || cfg.destTemplate.isBlank()) ? "YYYYMMDD" : cfg.destTemplate;
         txtFolderTemplate.setText(FolderTemplate.isValid(t) ? t : "YYYYMMDD");
+        chkDuplicates.setSelected(cfg.resolveDuplicates);
+        chkArchiveIndex.setSelected(cfg.useArchiveIndex);
     }
 
     public void writeToConfig(AppConfig cfg) {
         String t = getTemplate().isBlank() ? "YYYYMMDD" : getTemplate();
         cfg.destDir = getDestDir();
         cfg.destTemplate = FolderTemplate.isValid(t) ? t : "YYYYMMDD";
+        cfg.resolveDuplicates = chkDuplicates.isSelected();
+        cfg.useArchiveIndex = chkArchiveIndex.isSelected();
         if (!FolderTemplate.isValid(getTemplate())) {
             txtFolderTemplate.setText(cfg.destTemplate);
         }
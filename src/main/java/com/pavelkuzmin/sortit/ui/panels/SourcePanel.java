@@ -2,6 +2,7 @@ package com.pavelkuzmin.sortit.ui.panels;
 
 import com.pavelkuzmin.sortit.config.AppConfig;
 import com.pavelkuzmin.sortit.config.DateSource;
+import com.pavelkuzmin.sortit.config.TransferMode;
 import com.pavelkuzmin.sortit.i18n.Strings;
 
 import javax.swing.*;
@@ -26,8 +27,11 @@ public class SourcePanel extends JPanel {
     private final JRadioButton rbFromMeta    = new JRadioButton(Strings.get("source.dateSource.metadata"), true);
     private final JRadioButton rbFromCreated = new JRadioButton(Strings.get("source.dateSource.created"));
 
+    private final JCheckBox chkRecursive = new JCheckBox(Strings.get("source.recursive"));
+
     private final JRadioButton rbCopy = new JRadioButton(Strings.get("source.mode.copy"), true);
     private final JRadioButton rbMove = new JRadioButton(Strings.get("source.mode.move"));
+    private final JRadioButton rbLink = new JRadioButton(Strings.get("source.mode.link"));
 
     private Runnable onSourceChanged;
     private Runnable onTemplateChanged;
@@ -67,6 +71,11 @@ public class SourcePanel extends JPanel {
         c.gridx = 2; c.gridy = row; c.weightx = 0; add(infoNameTpl, c);
         row++;
 
+        // Подпапки
+        c.gridx = 1; c.gridy = row; c.weightx = 1; c.gridwidth = 2; add(chkRecursive, c);
+        c.gridwidth = 1;
+        row++;
+
         // Брать дату из:
         c.gridx = 0; c.gridy = row; c.weightx = 0; add(new JLabel(Strings.get("source.dateSource.label")), c);
         JPanel dateRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 12, 0));
@@ -83,8 +92,9 @@ public class SourcePanel extends JPanel {
         JPanel modeRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 12, 0));
         modeRow.setOpaque(false);
         ButtonGroup grpMode = new ButtonGroup();
-        grpMode.add(rbCopy); grpMode.add(rbMove);
-        modeRow.add(rbCopy); modeRow.add(rbMove);
+        grpMode.add(rbCopy); grpMode.add(rbMove); grpMode.add(rbLink);
+        modeRow.add(rbCopy); modeRow.add(rbMove); modeRow.add(rbLink);
+        rbLink.setToolTipText(Strings.get("hint.mode.link"));
         c.gridx = 1; c.gridy = row; c.weightx = 1; c.gridwidth = 2; add(modeRow, c);
         c.gridwidth = 1;
         row++;
@@ -95,6 +105,7 @@ public class SourcePanel extends JPanel {
             fireSourceChanged();
         });
 
+        chkRecursive.addActionListener(e -> fireSourceChanged());
         txtFilenameTemplate.addActionListener(e -> fireTemplateChanged());
         txtFilenameTemplate.addFocusListener(new FocusAdapter() {
             @Override public void focusLost(FocusEvent e) { fireTemplateChanged(); }
@@ -150,7 +161,12 @@ public class SourcePanel extends JPanel {
     public String getFilenameTemplate() { return txtFilenameTemplate.getText().trim(); }
     public void   setFilenameTemplate(String tpl) { txtFilenameTemplate.setText(tpl == null ? "" : tpl); }
 
-    public boolean isCopyMode() { return rbCopy.isSelected(); }
+    public TransferMode getTransferMode() {
+        if (rbLink.isSelected()) return TransferMode.LINK;
+        if (rbMove.isSelected()) return TransferMode.MOVE;
+        return TransferMode.COPY;
+    }
+    public boolean isRecursive() { return chkRecursive.isSelected(); }
     public DateSource getDateSource() {
         if (rbFromMeta.isSelected())    return DateSource.METADATA;
         if (rbFromCreated.isSelected()) return DateSource.CREATED;
@@ -162,11 +178,13 @@ public class SourcePanel extends JPanel {
         btnBrowseSource.setEnabled(enabled);
         txtFilenameTemplate.setEnabled(enabled);
         infoNameTpl.setEnabled(enabled);
+        chkRecursive.setEnabled(enabled);
         rbFromName.setEnabled(enabled);
         rbFromMeta.setEnabled(enabled);
         rbFromCreated.setEnabled(enabled);
         rbCopy.setEnabled(enabled);
         rbMove.setEnabled(enabled);
+        rbLink.setEnabled(enabled);
     }
 
     public void applyConfig(AppConfig cfg) {
@@ -177,14 +195,20 @@ public class SourcePanel extends JPanel {
             case CREATED  -> rbFromCreated.setSelected(true);
             default       -> rbFromName.setSelected(true);
         }
-        if (cfg.copyMode) rbCopy.setSelected(true); else rbMove.setSelected(true);
+        if (cfg.linkMode) rbLink.setSelected(true);
+        else if (cfg.copyMode) rbCopy.setSelected(true);
+        else rbMove.setSelected(true);
+        chkRecursive.setSelected(cfg.recursive);
     }
 
     public void writeToConfig(AppConfig cfg) {
         cfg.sourceDir = getSourceDir();
         cfg.filenameTemplate = getFilenameTemplate().isBlank() ? "*.*" : getFilenameTemplate();
         cfg.dateSource = getDateSource();
-        cfg.copyMode = isCopyMode();
+        TransferMode mode = getTransferMode();
+        cfg.linkMode = mode == TransferMode.LINK;
+        if (mode != TransferMode.LINK) cfg.copyMode = mode == TransferMode.COPY;
+        cfg.recursive = isRecursive();
     }
 
     public void setOnSourceChanged(Runnable r)   { this.onSourceChanged = r; }
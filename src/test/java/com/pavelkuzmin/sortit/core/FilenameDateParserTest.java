@@ -0,0 +1,64 @@
+package com.pavelkuzmin.sortit.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilenameDateParserTest {
+
+    @Test
+    void cameraPrefixes() {
+        assertEquals(Optional.of(LocalDate.of(2025, 1, 4)), FilenameDateParser.parse("PXL_20250104_131548355.jpg"));
+        assertEquals(Optional.of(LocalDate.of(2023, 7, 9)), FilenameDateParser.parse("IMG_20230709_101010.jpg"));
+        assertEquals(Optional.of(LocalDate.of(2023, 7, 9)), FilenameDateParser.parse("VID_20230709_101010.mp4"));
+        assertEquals(Optional.of(LocalDate.of(2019, 3, 1)), FilenameDateParser.parse("IMG20190301.jpg"));
+        assertEquals(Optional.of(LocalDate.of(2013, 12, 31)), FilenameDateParser.parse("WP_20131231_001.jpg"));
+        assertEquals(Optional.of(LocalDate.of(2024, 1, 1)), FilenameDateParser.parse("20240101_120000.jpg"));
+    }
+
+    @Test
+    void prefixIsCaseInsensitive() {
+        assertEquals(Optional.of(LocalDate.of(2022, 5, 6)), FilenameDateParser.parse("img_20220506.jpg"));
+    }
+
+    @Test
+    void dateAnywhereInName() {
+        assertEquals(Optional.of(LocalDate.of(2021, 8, 15)), FilenameDateParser.parse("Screenshot from 20210815 trip.png"));
+        assertEquals(Optional.of(LocalDate.of(2021, 8, 15)), FilenameDateParser.parse("backup-20210815.zip"));
+    }
+
+    @Test
+    void invalidDatesAreSkipped() {
+        // 29 февраля только в високосный год; первая некорректная группа не мешает следующей
+        assertEquals(Optional.of(LocalDate.of(2024, 2, 29)), FilenameDateParser.parse("IMG_20240229.jpg"));
+        assertEquals(Optional.of(LocalDate.of(2023, 2, 28)), FilenameDateParser.parse("x_20230229_20230228.jpg"));
+        assertEquals(Optional.empty(), FilenameDateParser.parse("IMG_19001301.jpg"));
+        assertEquals(Optional.empty(), FilenameDateParser.parse("IMG_20230431.jpg"));
+        assertEquals(Optional.of(LocalDate.of(2000, 2, 29)), FilenameDateParser.parse("20000229.jpg"));
+        assertEquals(Optional.empty(), FilenameDateParser.parse("19000229.jpg"));
+    }
+
+    @Test
+    void groupsShorterThanEightDigitsDoNotMatch() {
+        assertEquals(Optional.empty(), FilenameDateParser.parse("DSC_1234.jpg"));
+        assertEquals(Optional.empty(), FilenameDateParser.parse("2024010.jpg"));
+        assertEquals(Optional.empty(), FilenameDateParser.parse(""));
+        assertEquals(Optional.empty(), FilenameDateParser.parse("photo.jpg"));
+    }
+
+    @Test
+    void longerDigitRunsAreSplitWithoutOverlap() {
+        // как find() по [0-9]{8}: 12345678 не дата, следующая группа начинается после неё
+        assertEquals(Optional.of(LocalDate.of(2020, 10, 10)), FilenameDateParser.parse("1234567820201010.jpg"));
+        assertEquals(Optional.empty(), FilenameDateParser.parse("9920201010.jpg"));
+    }
+
+    @Test
+    void scanReturnsYyyymmdd() {
+        assertEquals(20250104, FilenameDateParser.scan("PXL_20250104_131548355.jpg"));
+        assertEquals(FilenameDateParser.NO_DATE, FilenameDateParser.scan("none.jpg"));
+    }
+}
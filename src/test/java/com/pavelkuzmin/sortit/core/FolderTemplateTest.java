@@ -0,0 +1,57 @@
+package com.pavelkuzmin.sortit.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FolderTemplateTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 7);
+
+    @Test
+    void validTemplates() {
+        assertTrue(FolderTemplate.isValid("YYYY"));
+        assertTrue(FolderTemplate.isValid("YYYY-MM-DD"));
+        assertTrue(FolderTemplate.isValid("YY_MM.DD"));
+        assertTrue(FolderTemplate.isValid("YYYY/MM/DD"));
+        assertTrue(FolderTemplate.isValid("YYYY/MM-DD"));
+    }
+
+    @Test
+    void invalidTemplates() {
+        assertFalse(FolderTemplate.isValid(null));
+        assertFalse(FolderTemplate.isValid(" "));
+        assertFalse(FolderTemplate.isValid("YYY"));
+        assertFalse(FolderTemplate.isValid("YYYYY"));
+        assertFalse(FolderTemplate.isValid("M"));
+        assertFalse(FolderTemplate.isValid("YYYY MM"));
+        assertFalse(FolderTemplate.isValid("photos/YYYY"));
+        // уровень без токенов дал бы пустое имя, "." или ".."
+        assertFalse(FolderTemplate.isValid("YYYY//MM"));
+        assertFalse(FolderTemplate.isValid("/YYYY"));
+        assertFalse(FolderTemplate.isValid("YYYY/"));
+        assertFalse(FolderTemplate.isValid("YYYY/../MM"));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("YYYY/.."));
+    }
+
+    @Test
+    void format() {
+        assertEquals("2024", FolderTemplate.apply("YYYY", DATE));
+        assertEquals("24_03.07", FolderTemplate.apply("YY_MM.DD", DATE));
+        assertEquals("2024/03/07", FolderTemplate.apply("YYYY/MM/DD", DATE));
+        assertEquals("0987-12", FolderTemplate.apply("YYYY-MM", LocalDate.of(987, 12, 1)));
+    }
+
+    @Test
+    void folderIsResolvedUnderBaseAndCached() {
+        Path base = Path.of("archive");
+        FolderTemplate t = FolderTemplate.compile("YYYY/MM").under(base);
+        Path p = t.folder(DATE);
+        assertEquals(base.resolve("2024/03"), p);
+        assertSame(p, t.folder(LocalDate.of(2024, 3, 7)));
+        assertEquals(Path.of("2024/03"), FolderTemplate.compile("YYYY/MM").folder(DATE));
+    }
+}
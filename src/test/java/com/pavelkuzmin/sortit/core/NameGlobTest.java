@@ -0,0 +1,47 @@
+package com.pavelkuzmin.sortit.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameGlobTest {
+
+    @Test
+    void starAndQuestionMark() {
+        NameGlob g = NameGlob.compile("IMG_????.jp*g");
+        assertTrue(g.matches("IMG_0001.jpg"));
+        assertTrue(g.matches("IMG_0001.jpeg"));
+        assertFalse(g.matches("IMG_001.jpg"));
+        assertFalse(g.matches("IMG_0001.png"));
+    }
+
+    @Test
+    void caseInsensitive() {
+        NameGlob g = NameGlob.compile("*.JPG");
+        assertTrue(g.matches("photo.jpg"));
+        assertTrue(g.matches("PHOTO.JPG"));
+        assertTrue(NameGlob.compile("фото*").matches("ФОТО_1.jpg"));
+    }
+
+    @Test
+    void blankMeansAnyNameWithDot() {
+        NameGlob g = NameGlob.compile("  ");
+        assertTrue(g.matches("a.b"));
+        assertFalse(g.matches("README"));
+        assertTrue(NameGlob.compile(null).matches(".hidden"));
+        assertTrue(NameGlob.compile("*").matches("README"));
+    }
+
+    @Test
+    void starNeedsBacktrackingToLastStar() {
+        NameGlob g = NameGlob.compile("*a*b");
+        assertTrue(g.matches("xaab"));
+        assertTrue(g.matches("ab"));
+        assertTrue(g.matches("aXbYb"));
+        assertFalse(g.matches("aXbY"));
+        assertTrue(NameGlob.compile("**.txt").matches("x.txt"));
+        assertFalse(NameGlob.compile("a").matches(""));
+        assertTrue(NameGlob.compile("*?").matches("z"));
+        assertFalse(NameGlob.compile("*?").matches(""));
+    }
+}
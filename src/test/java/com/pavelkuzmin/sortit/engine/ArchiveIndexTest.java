@@ -0,0 +1,99 @@
+package com.pavelkuzmin.sortit.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveIndexTest {
+
+    @TempDir
+    Path tmp;
+
+    private Path file(String rel, byte[] data) throws IOException {
+        Path p = tmp.resolve(rel);
+        Files.createDirectories(p.getParent());
+        return Files.write(p, data);
+    }
+
+    private static byte[] data(int size, int seed) {
+        byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) b[i] = (byte) (i * 31 + seed);
+        return b;
+    }
+
+    @Test
+    void existingArchiveIsIndexedOnFirstOpen() throws IOException {
+        Path root = tmp.resolve("archive");
+        file("archive/2024/a.jpg", data(1000, 1));
+        file("archive/2024/b.jpg", data(2000, 2));
+        file("archive/2024/c.jpg" + SortEngine.PART_SUFFIX, data(3000, 3));
+
+        try (ArchiveIndex ix = ArchiveIndex.open(root)) {
+            assertEquals(2, ix.built());
+            assertNotNull(ix.probe(file("src/a.jpg", data(1000, 1))).existing());
+            assertNull(ix.probe(file("src/c.jpg", data(3000, 3))).existing());
+        }
+        try (ArchiveIndex ix = ArchiveIndex.open(root)) {
+            assertEquals(-1, ix.built());   // индекс уже есть — архив заново не обходится
+            assertEquals(2, ix.size());
+        }
+    }
+
+    @Test
+    void sameSizeAndHeadButDifferentTailIsNotADuplicate() throws IOException {
+        Path root = tmp.resolve("archive");
+        byte[] a = data(512 * 1024, 7);
+        byte[] b = Arrays.copyOf(a, a.length);
+        b[b.length - 1] ^= 1;   // partial (первые 128 КБ) совпадает
+        file("archive/a.jpg", a);
+
+        try (ArchiveIndex ix = ArchiveIndex.open(root)) {
+            assertNull(ix.probe(file("src/b.jpg", b)).existing());
+            assertEquals(root.resolve("a.jpg"), ix.probe(file("src/a.jpg", a)).existing());
+        }
+    }
+
+    @Test
+    void addedFilesAreFoundAfterReopen() throws IOException {
+        Path root = tmp.resolve("archive");
+        Path src = file("src/new.jpg", data(4000, 4));
+        try (ArchiveIndex ix = ArchiveIndex.open(root)) {
+            ArchiveIndex.Probe p = ix.probe(src);
+            assertNull(p.existing());
+            Path placed = Files.copy(src, Files.createDirectories(root.resolve("2024")).resolve("new.jpg"));
+            ix.add(p, placed);
+        }
+        try (ArchiveIndex ix = ArchiveIndex.open(root)) {
+            assertEquals(root.resolve("2024/new.jpg"), ix.probe(src).existing());
+        }
+    }
+
+    @Test
+    void rebuildDropsStaleEntries() throws IOException {
+        Path root = tmp.resolve("archive");
+        Path gone = file("archive/gone.jpg", data(1500, 5));
+        file("archive/kept.jpg", data(1600, 6));
+        ArchiveIndex.open(root).close();
+        Files.delete(gone);
+
+        assertEquals(1, ArchiveIndex.rebuild(root));
+        try (ArchiveIndex ix = ArchiveIndex.open(root)) {
+            assertEquals(1, ix.size());
+            assertNull(ix.probe(file("src/gone.jpg", data(1500, 5))).existing());
+        }
+    }
+
+    @Test
+    void secondOpenIsRefused() throws IOException {
+        Path root = tmp.resolve("archive");
+        try (ArchiveIndex ix = ArchiveIndex.open(root)) {
+            assertThrows(IOException.class, () -> ArchiveIndex.open(root));
+        }
+    }
+}
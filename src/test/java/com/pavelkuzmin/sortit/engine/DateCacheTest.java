@@ -0,0 +1,110 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.DateSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDate DATE = LocalDate.of(2024, 5, 1);
+
+    private Path file() {
+        return dir.resolve(DateCache.FILE_NAME);
+    }
+
+    private static Path photo(int i) {
+        return Path.of("/photos/IMG_" + i + ".jpg");
+    }
+
+    private void fill(int n) throws IOException {
+        try (DateCache c = DateCache.open(file(), 1000)) {
+            for (int i = 0; i < n; i++) {
+                c.put(photo(i), DateSource.METADATA, i, 100 + i, i % 2 == 0 ? Optional.of(DATE.plusDays(i)) : Optional.empty());
+            }
+        }
+    }
+
+    private int hits(int n) throws IOException {
+        try (DateCache c = DateCache.open(file(), 1000)) {
+            for (int i = 0; i < n; i++) c.get(photo(i), DateSource.METADATA, i, 100 + i);
+            return (int) c.hits.get();
+        }
+    }
+
+    @Test
+    void entriesSurviveReopen() throws IOException {
+        fill(10);
+        try (DateCache c = DateCache.open(file(), 1000)) {
+            assertEquals(Optional.of(DATE), c.get(photo(0), DateSource.METADATA, 0, 100));
+            assertEquals(Optional.empty(), c.get(photo(1), DateSource.METADATA, 1, 101));   // "даты нет" тоже запомнено
+            assertNull(c.get(photo(2), DateSource.METADATA, 2, 999));                     // файл изменился
+            assertNull(c.get(photo(2), DateSource.FILENAME, 2, 102));
+            assertNull(c.get(photo(99), DateSource.METADATA, 99, 199));
+        }
+    }
+
+    @Test
+    void hitsDoNotGrowTheFile() throws IOException {
+        fill(10);
+        long size = Files.size(file());
+        for (int run = 0; run < 3; run++) assertEquals(10, hits(10));
+        assertEquals(size, Files.size(file()));
+    }
+
+    @Test
+    void tornTailIsDroppedAndNewRecordsStayReadable() throws IOException {
+        fill(20);
+        // падение посреди дозаписи: последняя запись оборвана
+        try (FileChannel ch = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 5);
+        }
+        assertEquals(19, hits(20));
+        // промах дописан после обрезанного хвоста и читается при следующем открытии
+        try (DateCache c = DateCache.open(file(), 1000)) {
+            c.put(photo(19), DateSource.METADATA, 19, 119, Optional.empty());
+        }
+        assertEquals(20, hits(20));
+    }
+
+    @Test
+    void foreignFileIsIgnored() throws IOException {
+        Files.writeString(file(), "not a cache");
+        assertEquals(0, hits(1));
+        fill(3);
+        assertEquals(3, hits(3));
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        fill(10);
+        hits(5);    // записи 0..4 пригодились позже остальных
+        try (DateCache c = DateCache.open(file(), 5)) {
+            c.get(photo(0), DateSource.METADATA, 0, 100);
+        }
+        assertEquals(5, hits(5));
+        try (DateCache c = DateCache.open(file(), 1000)) {
+            assertNull(c.get(photo(9), DateSource.METADATA, 9, 109));
+        }
+    }
+
+    @Test
+    void secondInstanceIsRefused() throws IOException {
+        try (DateCache c = DateCache.open(file(), 1000)) {
+            assertThrows(IOException.class, () -> DateCache.open(file(), 1000));
+        }
+        DateCache.open(file(), 1000).close();
+    }
+}
@@ -0,0 +1,110 @@
+package com.pavelkuzmin.sortit.engine;
+
+import com.pavelkuzmin.sortit.config.TransferMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobManifestTest {
+
+    @TempDir
+    Path dest;
+
+    private JobManifest started() throws IOException {
+        SortJob job = new SortJob();
+        job.mode = TransferMode.MOVE;
+        job.resolveDuplicates = true;
+        JobManifest m = JobManifest.at(dest);
+        m.create(job);
+        Files.writeString(m.planDraft(), "plan");
+        m.commitPlan();
+        return m;
+    }
+
+    @Test
+    void settingsOfTheOriginalJobWin() throws IOException {
+        started();
+        JobManifest m = JobManifest.at(dest);
+        assertTrue(m.exists());
+        SortJob now = new SortJob();   // текущие настройки: копия, без дублей
+        m.restoreSettings(now);
+        assertEquals(TransferMode.MOVE, now.mode);
+        assertTrue(now.resolveDuplicates);
+        assertFalse(now.useArchiveIndex);
+    }
+
+    @Test
+    void planIsNotVisibleUntilCommitted() throws IOException {
+        JobManifest m = JobManifest.at(dest);
+        m.create(new SortJob());
+        Files.writeString(m.planDraft(), "half a pl");
+        assertFalse(m.exists());   // упали до commitPlan() — задачи нет
+    }
+
+    @Test
+    void resumeStartsAtFirstUnfinishedLine() throws IOException {
+        JobManifest m = started();
+        assertEquals(0, m.resume());
+        m.reading(0, 10);
+        m.reading(10, 20);
+        m.reading(20, 30);
+        m.committed(10);            // строки завершаются не по порядку
+        m.committed(20);
+        m.close();
+
+        JobManifest again = JobManifest.at(dest);
+        assertEquals(0, again.resume());
+        assertFalse(again.isDone(0));
+        assertTrue(again.isDone(10));
+        assertTrue(again.isDone(20));
+        again.reading(0, 10);
+        again.skipped(20);
+        again.skipped(30);
+        again.committed(0);
+        again.close();
+
+        JobManifest third = JobManifest.at(dest);
+        assertEquals(30, third.resume());
+        third.close();
+    }
+
+    @Test
+    void crashBeforeCloseKeepsThePreviousCheckpoint() throws IOException {
+        JobManifest m = started();
+        m.resume();
+        m.reading(0, 10);
+        m.committed(0);
+        m.close();
+
+        JobManifest crashed = JobManifest.at(dest);
+        assertEquals(10, crashed.resume());
+        crashed.reading(10, 20);    // не закрыт: процесс «упал» до следующей отметки
+        // недописанный временный файл отметки не должен мешать
+        Files.writeString(dest.resolve(JobManifest.DIR).resolve("checkpoint.tmp"), "torn");
+
+        JobManifest after = JobManifest.at(dest);
+        assertEquals(10, after.resume());
+        assertFalse(after.isDone(10));
+        after.close();
+    }
+
+    @Test
+    void badCheckpointIsReported() throws IOException {
+        started();
+        Files.writeString(dest.resolve(JobManifest.DIR).resolve("checkpoint"), "garbage!garbage!");
+        assertThrows(IOException.class, () -> JobManifest.at(dest).resume());
+    }
+
+    @Test
+    void finishRemovesTheJob() throws IOException {
+        JobManifest m = started();
+        m.resume();
+        m.finish();
+        assertFalse(Files.exists(dest.resolve(JobManifest.DIR)));
+    }
+}
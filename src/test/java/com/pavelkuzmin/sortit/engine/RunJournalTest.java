@@ -0,0 +1,78 @@
+package com.pavelkuzmin.sortit.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static RunJournal.Entry copied(int i) {
+        return new RunJournal.Entry(RunJournal.Outcome.COPIED, "/src/" + i + ".jpg", "/dst/" + i + ".jpg",
+                "FILENAME", "2024-01-01", 100 + i, 5, null, null);   // пустые поля в файл не пишутся
+    }
+
+    private Path write(int n) throws IOException {
+        Path f = dir.resolve("run.jsonl");
+        try (RunJournal j = RunJournal.open(f)) {
+            for (int i = 0; i < n; i++) j.record(copied(i));
+            j.record(new RunJournal.Entry(RunJournal.Outcome.FAILED, "/src/x.jpg", null, null, null,
+                    7, 0, "error.transfer", List.of("x.jpg", "/dst", "disk full")));
+        }
+        return f;
+    }
+
+    private static List<RunJournal.Entry> readAll(Path f) throws IOException {
+        List<RunJournal.Entry> all = new ArrayList<>();
+        RunJournal.read(f, all::add);
+        return all;
+    }
+
+    @Test
+    void entriesRoundTrip() throws IOException {
+        List<RunJournal.Entry> all = readAll(write(3));
+        assertEquals(4, all.size());
+        assertEquals(copied(1), all.get(1));
+        RunJournal.Entry failed = all.get(3);
+        assertTrue(failed.failed());
+        assertNull(failed.target());
+        assertEquals(List.of("x.jpg", "/dst", "disk full"), failed.args());
+    }
+
+    @Test
+    void truncatedTailIsSkipped() throws IOException {
+        Path f = write(3);
+        // падение посреди записи: последняя строка оборвана
+        Files.writeString(f, "{\"outcome\":\"COPIED\",\"source\":\"/src/9.j", StandardOpenOption.APPEND);
+        assertEquals(4, readAll(f).size());
+
+        byte[] b = Files.readAllBytes(write(3));
+        Files.write(f, Arrays.copyOf(b, b.length - 20));
+        assertEquals(3, readAll(f).size());
+    }
+
+    @Test
+    void sinkCanStopReading() throws IOException {
+        Path f = write(10);
+        int[] n = {0};
+        RunJournal.read(f, e -> ++n[0] < 2);
+        assertEquals(2, n[0]);
+    }
+
+    @Test
+    void parseSingleLine() throws IOException {
+        String line = Files.readAllLines(write(1)).get(0);
+        assertEquals(copied(0), RunJournal.parse(line));
+    }
+}